@@ -0,0 +1,62 @@
+package com.empatica.sample;
+
+import android.util.Log;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Routes diagnostics of the processing code to logcat and keeps the reported metrics in memory,
+ * where the app can read them back by name. Each counter and metric has one holder, created the
+ * first time its name is reported, so later reports neither allocate nor box.
+ */
+public class AndroidDiagnosticsSink implements DiagnosticsSink {
+
+    private final ConcurrentHashMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    // Raw bits of the latest value of each metric
+    private final ConcurrentHashMap<String, AtomicLong> latestValues = new ConcurrentHashMap<>();
+
+    @Override
+    public void log(int level, String tag, String message, Throwable error) {
+        if (error != null) {
+            message = message + '\n' + Log.getStackTraceString(error);
+        }
+        // DiagnosticsSink levels use the same values as android.util.Log
+        Log.println(level, tag, message);
+    }
+
+    @Override
+    public void count(String name, long delta) {
+        holder(counters, name).addAndGet(delta);
+    }
+
+    @Override
+    public void record(String name, double value) {
+        holder(latestValues, name).set(Double.doubleToRawLongBits(value));
+    }
+
+    // The holder of a name, created the first time the name is seen
+    private static AtomicLong holder(ConcurrentHashMap<String, AtomicLong> holders, String name) {
+        AtomicLong holder = holders.get(name);
+        if (holder == null) {
+            AtomicLong created = new AtomicLong();
+            holder = holders.putIfAbsent(name, created);
+            if (holder == null) {
+                holder = created;
+            }
+        }
+        return holder;
+    }
+
+    // Current value of a counter, 0 if it was never incremented
+    public long getCount(String name) {
+        AtomicLong counter = counters.get(name);
+        return counter != null ? counter.get() : 0;
+    }
+
+    // Last recorded value of a metric, NaN if none was recorded
+    public double getLatest(String name) {
+        AtomicLong bits = latestValues.get(name);
+        return bits != null ? Double.longBitsToDouble(bits.get()) : Double.NaN;
+    }
+}
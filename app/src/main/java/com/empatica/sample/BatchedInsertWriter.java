@@ -0,0 +1,154 @@
+package com.empatica.sample;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Buffers rows for one INSERT statement and writes them in batched transactions.
+ *
+ * Rows are kept in a primitive array until either {@code maxBatchSize} rows are pending or the
+ * oldest pending row is {@code maxDelayMillis} old, then they are inserted in a single
+ * transaction through a {@link SQLiteStatement} compiled once on the helper's long-lived
+ * connection. Call {@link #flushIfDue()} periodically so a quiet stream still reaches disk, and
+ * {@link #flush()} before reading the table or closing the helper. Every flush is timed into
+ * the {@code store.flush} histogram of {@link PerformanceMetrics}.
+ */
+public class BatchedInsertWriter {
+
+    private static final String TAG = "BatchedInsertWriter";
+
+    // Shared by all writers; a flush blocks the worker that triggered it
+    private static final LatencyHistogram FLUSH = PerformanceMetrics.histogram("store.flush");
+    private static final AtomicLong ROWS_WRITTEN = PerformanceMetrics.counter("store.rows_written");
+    private static final AtomicLong ROWS_FAILED = PerformanceMetrics.counter("store.rows_failed");
+
+    public interface FlushListener {
+        // Called inside the batch transaction, after the pending rows have been inserted
+        void onFlush(SQLiteDatabase db);
+    }
+
+    private final SQLiteOpenHelper helper;
+    private final String insertSql;
+    private final int columnCount;
+    private final int maxBatchSize;
+    private final long maxDelayMillis;
+    private final double[] pending;
+    private int pendingRows = 0;
+    private long firstPendingTime = 0;
+    private SQLiteStatement statement;
+    private FlushListener flushListener;
+
+    public BatchedInsertWriter(SQLiteOpenHelper helper, String insertSql, int columnCount,
+                               int maxBatchSize, long maxDelayMillis) {
+        this.helper = helper;
+        this.insertSql = insertSql;
+        this.columnCount = columnCount;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.pending = new double[maxBatchSize * columnCount];
+    }
+
+    // Lets the owner write derived data, such as rollups, atomically with each batch
+    public synchronized void setFlushListener(FlushListener listener) {
+        this.flushListener = listener;
+    }
+
+    // Queues one row, bound in order to the statement's placeholders; flushes when a limit is hit
+    public synchronized void add(double... values) {
+        checkColumns(values.length);
+        System.arraycopy(values, 0, pending, startRow(), columnCount);
+        rowAdded();
+    }
+
+    // Queues one row of a three-column statement without the varargs array of add(double...)
+    public synchronized void add(double first, double second, double third) {
+        checkColumns(3);
+        int offset = startRow();
+        pending[offset] = first;
+        pending[offset + 1] = second;
+        pending[offset + 2] = third;
+        rowAdded();
+    }
+
+    private void checkColumns(int count) {
+        if (count != columnCount) {
+            throw new IllegalArgumentException("Expected " + columnCount + " values, got " + count);
+        }
+    }
+
+    // Offset of the next row in pending
+    private int startRow() {
+        if (pendingRows == 0) {
+            firstPendingTime = SystemClock.elapsedRealtime();
+        }
+        return pendingRows * columnCount;
+    }
+
+    private void rowAdded() {
+        pendingRows++;
+        if (pendingRows >= maxBatchSize) {
+            flush();
+        } else {
+            flushIfDue();
+        }
+    }
+
+    // Writes pending rows if the oldest of them has waited longer than the configured delay
+    public synchronized void flushIfDue() {
+        if (pendingRows > 0 && SystemClock.elapsedRealtime() - firstPendingTime >= maxDelayMillis) {
+            flush();
+        }
+    }
+
+    // Writes all pending rows in one transaction
+    public synchronized void flush() {
+        if (pendingRows == 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        SQLiteDatabase db = null;
+        try {
+            db = helper.getWritableDatabase();
+            if (statement == null) {
+                statement = db.compileStatement(insertSql);
+            }
+            db.beginTransactionNonExclusive();
+            for (int row = 0; row < pendingRows; row++) {
+                int offset = row * columnCount;
+                for (int column = 0; column < columnCount; column++) {
+                    statement.bindDouble(column + 1, pending[offset + column]);
+                }
+                statement.executeInsert();
+            }
+            if (flushListener != null) {
+                flushListener.onFlush(db);
+            }
+            db.setTransactionSuccessful();
+            ROWS_WRITTEN.addAndGet(pendingRows);
+        } catch (Exception e) {
+            Log.e(TAG, "Error while writing " + pendingRows + " rows", e);
+            ROWS_FAILED.addAndGet(pendingRows);
+        } finally {
+            if (db != null && db.inTransaction()) {
+                db.endTransaction();
+            }
+            // Rows of a failed batch are dropped rather than retried forever
+            pendingRows = 0;
+            FLUSH.recordSince(start);
+        }
+    }
+
+    // Flushes and releases the compiled statement; the helper owns the connection itself
+    public synchronized void close() {
+        flush();
+        if (statement != null) {
+            statement.close();
+            statement = null;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.empatica.sample;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.widget.Button;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okio.BufferedSink;
+import okio.Okio;
+
+/**
+ * Shows the {@link PerformanceMetrics} of the running app, refreshed every second: stage
+ * latencies as percentiles in milliseconds, counters, per-device sample rates and the allocation
+ * totals. "Save JSON" writes the full dump to the app's files directory for offline analysis.
+ */
+public class DebugMetricsActivity extends AppCompatActivity {
+
+    private static final String TAG = "DebugMetricsActivity";
+    private static final long REFRESH_INTERVAL_MILLIS = 1000;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable refreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            refresh();
+            handler.postDelayed(this, REFRESH_INTERVAL_MILLIS);
+        }
+    };
+    private TextView metricsText;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_debug_metrics);
+
+        metricsText = findViewById(R.id.metrics_text);
+
+        Button saveButton = findViewById(R.id.save_metrics_button);
+        saveButton.setOnClickListener(v -> saveJson());
+
+        Button resetButton = findViewById(R.id.reset_metrics_button);
+        resetButton.setOnClickListener(v -> {
+            PerformanceMetrics.reset();
+            refresh();
+        });
+
+        Button backButton = findViewById(R.id.back_button);
+        backButton.setOnClickListener(v -> finish());
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        handler.post(refreshRunnable);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        handler.removeCallbacks(refreshRunnable);
+    }
+
+    private void refresh() {
+        StringBuilder text = new StringBuilder(2048);
+        PerformanceMetrics.AllocationSource allocation = PerformanceMetrics.getAllocationSource();
+        if (allocation != null) {
+            text.append(String.format(Locale.US, "Allocated %.1f MB, %d GCs%n%n",
+                    allocation.getAllocatedBytes() / 1e6, allocation.getGcCount()));
+        }
+
+        text.append(String.format(Locale.US, "%-28s %7s %7s %7s %7s%n", "latency (ms)", "p50", "p99", "max", "count"));
+        for (Map.Entry<String, LatencyHistogram> entry : PerformanceMetrics.getHistograms().entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            text.append(String.format(Locale.US, "%-28s %7.2f %7.2f %7.2f %7d%n", entry.getKey(),
+                    histogram.getValueAtPercentile(50.0) / 1e6, histogram.getValueAtPercentile(99.0) / 1e6,
+                    histogram.getMax() / 1e6, histogram.getCount()));
+        }
+
+        text.append('\n');
+        for (Map.Entry<String, PerformanceMetrics.Gauge> entry : PerformanceMetrics.getGauges().entrySet()) {
+            text.append(String.format(Locale.US, "%-36s %10.1f%n", entry.getKey(), entry.getValue().get()));
+        }
+
+        text.append('\n');
+        for (Map.Entry<String, AtomicLong> entry : PerformanceMetrics.getCounters().entrySet()) {
+            text.append(String.format(Locale.US, "%-36s %10d%n", entry.getKey(), entry.getValue().get()));
+        }
+        metricsText.setText(text);
+    }
+
+    private void saveJson() {
+        File directory = new File(getFilesDir(), "metrics");
+        String name = "metrics-" + new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date()) + ".json";
+        File file = new File(directory, name);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Toast.makeText(this, "Cannot create " + directory, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        try (BufferedSink sink = Okio.buffer(Okio.sink(file))) {
+            sink.writeUtf8(PerformanceMetrics.toJson());
+            Log.i(TAG, "Saved performance metrics to " + file.getAbsolutePath());
+            Toast.makeText(this, "Saved " + file.getName(), Toast.LENGTH_SHORT).show();
+        } catch (IOException e) {
+            Log.e(TAG, "Error saving performance metrics", e);
+            Toast.makeText(this, "Error saving metrics", Toast.LENGTH_SHORT).show();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.empatica.sample;
+
+import com.empatica.empalink.config.EmpaSensorStatus;
+import com.empatica.empalink.delegate.EmpaDataDelegate;
+import com.empatica.empalink.delegate.EmpaStatusDelegate;
+
+/**
+ * Presents an SDK {@link EmpaDataDelegate} as a {@link DeviceSampleSink}, so that a
+ * {@link DeviceSimulator} can drive the same callbacks a wristband would. Wrist status reaches the
+ * delegate too if it is also an {@link EmpaStatusDelegate}.
+ */
+public class EmpaDelegateSink implements DeviceSampleSink {
+
+    private final EmpaDataDelegate delegate;
+
+    public EmpaDelegateSink(EmpaDataDelegate delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void onBvp(float bvp, double timestamp) {
+        delegate.didReceiveBVP(bvp, timestamp);
+    }
+
+    @Override
+    public void onAcceleration(int x, int y, int z, double timestamp) {
+        delegate.didReceiveAcceleration(x, y, z, timestamp);
+    }
+
+    @Override
+    public void onEda(float conductance, double timestamp) {
+        delegate.didReceiveGSR(conductance, timestamp);
+    }
+
+    @Override
+    public void onTemperature(float temperature, double timestamp) {
+        delegate.didReceiveTemperature(temperature, timestamp);
+    }
+
+    @Override
+    public void onIbi(float ibi, double timestamp) {
+        delegate.didReceiveIBI(ibi, timestamp);
+    }
+
+    @Override
+    public void onBattery(float level, double timestamp) {
+        delegate.didReceiveBatteryLevel(level, timestamp);
+    }
+
+    @Override
+    public void onWristStatus(boolean onWrist) {
+        if (delegate instanceof EmpaStatusDelegate) {
+            ((EmpaStatusDelegate) delegate).didUpdateOnWristStatus(
+                    onWrist ? EmpaSensorStatus.ON_WRIST : EmpaSensorStatus.NOT_ON_WRIST);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.empatica.sample;
+
+import android.content.Context;
+import android.util.Log;
+import android.widget.Toast;
+
+import com.empatica.empalink.ConnectionNotAllowedException;
+import com.empatica.empalink.EmpaDeviceManager;
+import com.empatica.empalink.EmpaticaDevice;
+import com.empatica.empalink.config.EmpaSensorStatus;
+import com.empatica.empalink.config.EmpaSensorType;
+import com.empatica.empalink.config.EmpaStatus;
+import com.empatica.empalink.delegate.EmpaDataDelegate;
+import com.empatica.empalink.delegate.EmpaStatusDelegate;
+
+/**
+ * Link between one wristband and its {@link DeviceSession}.
+ *
+ * The SDK's data callbacks do not say which device they come from, so every device is connected
+ * through an {@link EmpaDeviceManager} of its own with this connection as both delegates; its
+ * callbacks go straight to its session, without a lookup or a shared lock. An optional tap sees
+ * the same data callbacks after the session, which the activity uses to show and record the
+ * selected device. A connection created without {@link #connect} is fed by a
+ * {@link SessionReplayer} instead of a device.
+ */
+public class EmpaDeviceConnection implements EmpaDataDelegate, EmpaStatusDelegate {
+
+    private static final String TAG = "EmpaDeviceConnection";
+
+    public interface Listener {
+        // Called on the SDK's thread when the device connects or disconnects
+        void onConnectionStatus(EmpaDeviceConnection connection, EmpaStatus status);
+
+        // Called on the SDK's thread when the device is put on or taken off the wrist
+        void onWristStatus(EmpaDeviceConnection connection, boolean onWrist);
+    }
+
+    private final DeviceSession session;
+    private final Listener listener;
+    private volatile EmpaDataDelegate tap;
+    private Context context;
+    private EmpaDeviceManager deviceManager;
+    private EmpaticaDevice device;
+    private boolean connectPending = false;
+
+    public EmpaDeviceConnection(DeviceSession session, Listener listener) {
+        this.session = session;
+        this.listener = listener;
+    }
+
+    // Authenticates a device manager of its own and connects the device once that is ready
+    public void connect(Context context, String apiKey, EmpaticaDevice device) {
+        this.context = context.getApplicationContext();
+        this.device = device;
+        connectPending = true;
+        deviceManager = new EmpaDeviceManager(this.context, this, this);
+        deviceManager.authenticateWithAPIKey(apiKey);
+    }
+
+    public void disconnect() {
+        connectPending = false;
+        if (deviceManager != null) {
+            deviceManager.disconnect();
+        }
+    }
+
+    public void cleanUp() {
+        if (deviceManager != null) {
+            deviceManager.cleanUp();
+            deviceManager = null;
+        }
+    }
+
+    // Also delivers this device's data callbacks to the delegate, or stops doing so with null
+    public void setTap(EmpaDataDelegate tap) {
+        this.tap = tap;
+    }
+
+    public DeviceSession getSession() {
+        return session;
+    }
+
+    public String getDeviceName() {
+        return session.getDeviceName();
+    }
+
+    @Override
+    public void didReceiveBVP(float bvp, double timestamp) {
+        session.onBvp(bvp, timestamp);
+        EmpaDataDelegate delegate = tap;
+        if (delegate != null) {
+            delegate.didReceiveBVP(bvp, timestamp);
+        }
+    }
+
+    @Override
+    public void didReceiveAcceleration(int x, int y, int z, double timestamp) {
+        session.onAcceleration(x, y, z, timestamp);
+        EmpaDataDelegate delegate = tap;
+        if (delegate != null) {
+            delegate.didReceiveAcceleration(x, y, z, timestamp);
+        }
+    }
+
+    @Override
+    public void didReceiveGSR(float gsr, double timestamp) {
+        session.onEda(gsr, timestamp);
+        EmpaDataDelegate delegate = tap;
+        if (delegate != null) {
+            delegate.didReceiveGSR(gsr, timestamp);
+        }
+    }
+
+    @Override
+    public void didReceiveTemperature(float temp, double timestamp) {
+        session.onTemperature(temp, timestamp);
+        EmpaDataDelegate delegate = tap;
+        if (delegate != null) {
+            delegate.didReceiveTemperature(temp, timestamp);
+        }
+    }
+
+    @Override
+    public void didReceiveIBI(float ibi, double timestamp) {
+        session.onIbi(ibi, timestamp);
+        EmpaDataDelegate delegate = tap;
+        if (delegate != null) {
+            delegate.didReceiveIBI(ibi, timestamp);
+        }
+    }
+
+    @Override
+    public void didReceiveBatteryLevel(float battery, double timestamp) {
+        session.onBattery(battery, timestamp);
+        EmpaDataDelegate delegate = tap;
+        if (delegate != null) {
+            delegate.didReceiveBatteryLevel(battery, timestamp);
+        }
+    }
+
+    @Override
+    public void didReceiveTag(double timestamp) {
+        EmpaDataDelegate delegate = tap;
+        if (delegate != null) {
+            delegate.didReceiveTag(timestamp);
+        }
+    }
+
+    @Override
+    public void didUpdateStatus(EmpaStatus status) {
+        if (status == EmpaStatus.READY && connectPending) {
+            connectPending = false;
+            try {
+                deviceManager.connectDevice(device);
+            } catch (ConnectionNotAllowedException e) {
+                Log.e(TAG, "ConnectionNotAllowedException", e);
+                Toast.makeText(context, "Sorry, you can't connect to this device", Toast.LENGTH_SHORT).show();
+            }
+        } else if (status == EmpaStatus.CONNECTED || status == EmpaStatus.DISCONNECTED) {
+            listener.onConnectionStatus(this, status);
+        }
+    }
+
+    @Override
+    public void didEstablishConnection() {
+    }
+
+    @Override
+    public void didUpdateSensorStatus(@EmpaSensorStatus int status, EmpaSensorType type) {
+        didUpdateOnWristStatus(status);
+    }
+
+    @Override
+    public void didUpdateOnWristStatus(@EmpaSensorStatus final int status) {
+        boolean onWrist = status == EmpaSensorStatus.ON_WRIST;
+        session.onWristStatus(onWrist);
+        listener.onWristStatus(this, onWrist);
+    }
+
+    // Scanning is done by the EmpaSessionManager; this manager only connects its own device
+    @Override
+    public void didDiscoverDevice(EmpaticaDevice device, String deviceName, int rssi, boolean allowed) {
+    }
+
+    @Override
+    public void didFailedScanning(int errorCode) {
+    }
+
+    @Override
+    public void didRequestEnableBluetooth() {
+    }
+
+    @Override
+    public void bluetoothStateChanged() {
+    }
+}
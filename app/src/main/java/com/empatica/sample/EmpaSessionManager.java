@@ -0,0 +1,117 @@
+package com.empatica.sample;
+
+import android.content.Context;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.empatica.empalink.EmpaDeviceManager;
+import com.empatica.empalink.EmpaticaDevice;
+import com.empatica.empalink.delegate.EmpaDataDelegate;
+import com.empatica.empalink.delegate.EmpaStatusDelegate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Scans for wristbands and connects any number of them, each through its own
+ * {@link EmpaDeviceConnection} feeding its own {@link DeviceSession}.
+ *
+ * Scanning uses one device manager whose status callbacks go to the scan delegate, usually the
+ * activity; it never connects a device itself. Sessions are owned by the
+ * {@link DeviceSessionManager}. Call every method on the main thread.
+ */
+public class EmpaSessionManager {
+
+    private static final String TAG = "EmpaSessionManager";
+    private static final String EMPATICA_API_KEY = "3dae274e320b4cfd97acad923ab0f777"; // TODO insert your API Key here
+
+    private final Context context;
+    private final DeviceSessionManager sessions;
+    private final EmpaDeviceConnection.Listener connectionListener;
+    private final Map<String, EmpaDeviceConnection> connections = new HashMap<>();
+    private EmpaDeviceManager scanManager;
+
+    public EmpaSessionManager(Context context, EmpaStatusDelegate scanDelegate, EmpaDataDelegate dataDelegate,
+                              DeviceSessionManager sessions, EmpaDeviceConnection.Listener connectionListener) {
+        this.context = context.getApplicationContext();
+        this.sessions = sessions;
+        this.connectionListener = connectionListener;
+        if (TextUtils.isEmpty(EMPATICA_API_KEY)) {
+            Log.e(TAG, "Insert your Empatica API key in EMPATICA_API_KEY");
+            return;
+        }
+        scanManager = new EmpaDeviceManager(this.context, dataDelegate, scanDelegate);
+        scanManager.authenticateWithAPIKey(EMPATICA_API_KEY);
+    }
+
+    public boolean isInitialized() {
+        return scanManager != null;
+    }
+
+    public void startScanning() {
+        if (scanManager != null) {
+            scanManager.startScanning();
+        } else {
+            Log.e(TAG, "DeviceManager is not initialized, cannot start scanning");
+        }
+    }
+
+    public void stopScanning() {
+        if (scanManager != null) {
+            scanManager.stopScanning();
+        }
+    }
+
+    // Opens the device's session and connects it; returns the existing connection if there is one
+    public EmpaDeviceConnection connect(EmpaticaDevice device, String deviceName) {
+        EmpaDeviceConnection connection = connections.get(deviceName);
+        if (connection == null) {
+            connection = new EmpaDeviceConnection(sessions.open(deviceName), connectionListener);
+            connections.put(deviceName, connection);
+            connection.connect(context, EMPATICA_API_KEY, device);
+        }
+        return connection;
+    }
+
+    // Disconnects the device and stops its session once the queued samples are processed, without waiting
+    public void disconnect(String deviceName) {
+        EmpaDeviceConnection connection = connections.remove(deviceName);
+        if (connection != null) {
+            connection.setTap(null);
+            connection.disconnect();
+            connection.cleanUp();
+        }
+        sessions.close(deviceName);
+    }
+
+    public void disconnectAll() {
+        for (String deviceName : new ArrayList<>(connections.keySet())) {
+            disconnect(deviceName);
+        }
+    }
+
+    public EmpaDeviceConnection getConnection(String deviceName) {
+        return connections.get(deviceName);
+    }
+
+    public List<EmpaDeviceConnection> getConnections() {
+        return new ArrayList<>(connections.values());
+    }
+
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    public DeviceSessionManager getSessions() {
+        return sessions;
+    }
+
+    public void cleanUp() {
+        disconnectAll();
+        if (scanManager != null) {
+            scanManager.cleanUp();
+        }
+    }
+}
@@ -7,6 +7,11 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
 
 import okio.Okio;
 import okio.Source;
@@ -15,6 +20,9 @@ public class FileHandler {
 
     private static final String TAG = "FileHandler";
 
+    // Raw segments are mapped in 1 MiB pieces, a little over half an hour of BVP
+    private static final int RAW_SEGMENT_BYTES = 1 << 20;
+
     public Source getFileSource(String filePath) {
         File file = new File(filePath);
         try {
@@ -39,6 +47,46 @@ public class FileHandler {
         }
     }
 
+    // Creates a new, timestamped directory for the raw recordings of one session
+    public File createSessionDirectory(File root) throws IOException {
+        String name = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date());
+        File directory = new File(root, name);
+        for (int i = 1; directory.exists(); i++) {
+            directory = new File(root, name + "-" + i);
+        }
+        if (!directory.mkdirs()) {
+            throw new IOException("Cannot create session directory " + directory);
+        }
+        Log.i(TAG, "Recording session to " + directory.getAbsolutePath());
+        return directory;
+    }
+
+    // Most recent session directory under root, or null if nothing was recorded yet
+    public File findLatestSession(File root) {
+        File[] sessions = root.listFiles(File::isDirectory);
+        if (sessions == null || sessions.length == 0) {
+            return null;
+        }
+        // Directory names start with the recording date, so name order is recording order
+        Arrays.sort(sessions);
+        return sessions[sessions.length - 1];
+    }
+
+    // Opens an append-only writer for one channel of a session
+    public RawSignalWriter openRawWriter(File sessionDirectory, RawChannel channel) {
+        return new RawSignalWriter(sessionDirectory, channel, RAW_SEGMENT_BYTES);
+    }
+
+    // Opens a reader over all recorded segments of one channel of a session
+    public RawSignalReader openRawReader(File sessionDirectory, RawChannel channel) {
+        return RawSignalReader.open(sessionDirectory, channel);
+    }
+
+    // Segment files of one channel, in recording order
+    public List<File> listSegments(File sessionDirectory, RawChannel channel) {
+        return RawSignalReader.listSegments(sessionDirectory, channel);
+    }
+
     private boolean createFile(File file) {
         try {
             boolean isFileCreated = file.createNewFile();
@@ -16,47 +16,54 @@ import com.github.mikephil.charting.data.LineData;
 import com.github.mikephil.charting.data.LineDataSet;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
-
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Charts heart rate, respiratory rate and blood pressure over the {@link #EXTRA_RANGE_SECONDS}
+ * up to the newest of their readings in the shared {@link MetricsStore}, so replayed and simulated
+ * sessions, whose timestamps may be far from now, are charted too. A series with at most {@link #MAX_POINTS} readings in the range is
+ * drawn from the readings themselves; a longer one from the rollups, at the finest resolution that
+ * stays under that many buckets, so an hour of heart rate is drawn from 60 one-minute means rather
+ * than thousands of readings. The charts are reloaded off the main thread while visible.
+ */
 public class HeartRateChartActivity extends AppCompatActivity {
 
     private static final String TAG = "HeartRateChartActivity";
 
+    // Length of the charted range in seconds, ending at the newest reading
+    public static final String EXTRA_RANGE_SECONDS = "range_seconds";
+    private static final double DEFAULT_RANGE_SECONDS = 3600.0;
+    // Upper bound on the readings or buckets drawn per series
+    private static final int MAX_POINTS = 600;
+    private static final long REFRESH_INTERVAL_MILLIS = 5000;
+    private static final int[] CHARTED_METRICS = {MetricsStore.METRIC_HEART_RATE,
+            MetricsStore.METRIC_RESPIRATORY_RATE, MetricsStore.METRIC_SYSTOLIC_BP, MetricsStore.METRIC_DIASTOLIC_BP};
+
     private LineChart hrChart;
     private LineChart respirationChart;
     private LineChart bpChart;
 
-    private LineDataSet hrDataSet, respirationDataSet, bpSystolicDataSet, bpDiastolicDataSet;
-    private LineData hrLineData, respirationLineData, bpLineData;
-
-    private LinkedList<Entry> hrEntries, respirationEntries, bpSystolicEntries, bpDiastolicEntries;
-
-    private Handler handler = new Handler(Looper.getMainLooper());
-    private Runnable updateHRAndRespirationRunnable;
-    private Runnable updateBPRunnable;
-    private int hrAndRespirationUpdateInterval = 1000; // 1 second
-    private int bpUpdateInterval = 3000; // 5 seconds
-    private final int maxEntries = 3600; // 1 hour of data with 1-second interval
-
-    private boolean isActivityVisible = false;
+    private MetricsStore metricsStore;
+    private double rangeSeconds;
+    private final ExecutorService queryExecutor = Executors.newSingleThreadExecutor();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable refreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            queryExecutor.execute(HeartRateChartActivity.this::loadCharts);
+            handler.postDelayed(this, REFRESH_INTERVAL_MILLIS);
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_heart_rate_chart);
 
-        // Retrieve data from intent
-        List<Float> hrData = (List<Float>) getIntent().getSerializableExtra("HRData");
-        List<Float> respirationData = (List<Float>) getIntent().getSerializableExtra("RespirationData");
-        List<Double> bpSystolicData = (List<Double>) getIntent().getSerializableExtra("SystolicBPData");
-        List<Double> bpDiastolicData = (List<Double>) getIntent().getSerializableExtra("DiastolicBPData");
-
-        // Log retrieved data for debugging
-        Log.d(TAG, "HR Data: " + hrData);
-        Log.d(TAG, "Respiration Data: " + respirationData);
-        Log.d(TAG, "BP Systolic Data: " + bpSystolicData);
-        Log.d(TAG, "BP Diastolic Data: " + bpDiastolicData);
+        rangeSeconds = getIntent().getDoubleExtra(EXTRA_RANGE_SECONDS, DEFAULT_RANGE_SECONDS);
+        metricsStore = MetricsStore.acquire(this);
 
         hrChart = findViewById(R.id.hr_chart);
         respirationChart = findViewById(R.id.respiration_chart);
@@ -72,63 +79,6 @@ public class HeartRateChartActivity extends AppCompatActivity {
         setGraph(hrChart);
         setGraph(respirationChart);
         setGraph(bpChart);
-
-        // Initialize data entries
-        hrEntries = new LinkedList<>();
-        respirationEntries = new LinkedList<>();
-        bpSystolicEntries = new LinkedList<>();
-        bpDiastolicEntries = new LinkedList<>();
-
-        // Initialize data sets with different colors
-        hrDataSet = new LineDataSet(hrEntries, "HR");
-        hrDataSet.setColor(getResources().getColor(R.color.colorHR));
-        hrDataSet.setLineWidth(2f);
-
-        respirationDataSet = new LineDataSet(respirationEntries, "Respiration");
-        respirationDataSet.setColor(getResources().getColor(R.color.colorRespiration));
-        respirationDataSet.setLineWidth(2f);
-
-        bpSystolicDataSet = new LineDataSet(bpSystolicEntries, "Systolic BP");
-        bpSystolicDataSet.setColor(getResources().getColor(R.color.colorBPSystolic));
-        bpSystolicDataSet.setLineWidth(2f);
-
-        bpDiastolicDataSet = new LineDataSet(bpDiastolicEntries, "Diastolic BP");
-        bpDiastolicDataSet.setColor(getResources().getColor(R.color.colorBPDiastolic));
-        bpDiastolicDataSet.setLineWidth(2f);
-
-        hrLineData = new LineData(hrDataSet);
-        respirationLineData = new LineData(respirationDataSet);
-        bpLineData = new LineData(bpSystolicDataSet, bpDiastolicDataSet);
-
-        hrChart.setData(hrLineData);
-        respirationChart.setData(respirationLineData);
-        bpChart.setData(bpLineData);
-
-        // Ensure initial data is shown
-        addNewHRAndRespirationData(hrData, respirationData);
-        addNewBPData(bpSystolicData, bpDiastolicData);
-
-        // Set up the update mechanism for HR and respiration data
-        updateHRAndRespirationRunnable = new Runnable() {
-            @Override
-            public void run() {
-                if (isActivityVisible) {
-                    addNewHRAndRespirationData(hrData, respirationData);
-                    handler.postDelayed(this, hrAndRespirationUpdateInterval);
-                }
-            }
-        };
-
-        // Set up the update mechanism for BP data
-        updateBPRunnable = new Runnable() {
-            @Override
-            public void run() {
-                if (isActivityVisible) {
-                    addNewBPData(bpSystolicData, bpDiastolicData);
-                    handler.postDelayed(this, bpUpdateInterval);
-                }
-            }
-        };
     }
 
     private void setGraph(LineChart chart) {
@@ -139,130 +89,92 @@ public class HeartRateChartActivity extends AppCompatActivity {
         chart.setPinchZoom(true);
 
         Description desc = new Description();
-        desc.setText("");
+        desc.setText("minutes");
         chart.setDescription(desc);
     }
 
-    private void addNewHRAndRespirationData(List<Float> hrData, List<Float> respirationData) {
-        if (hrData == null || respirationData == null) {
-            Log.e(TAG, "HR or Respiration data lists are null, cannot add new data");
-            return;
-        }
-
-        int newIndex = hrEntries.size();
-
-        if (newIndex < hrData.size() && newIndex < respirationData.size()) {
-            hrEntries.add(new Entry(newIndex, hrData.get(newIndex)));
-            respirationEntries.add(new Entry(newIndex, respirationData.get(newIndex)));
-
-            if (hrEntries.size() > maxEntries) {
-                hrEntries.removeFirst();
-                respirationEntries.removeFirst();
-                updateIndexes(hrEntries, respirationEntries);
+    // Runs on the query executor
+    private void loadCharts() {
+        try {
+            double latest = Double.NEGATIVE_INFINITY;
+            for (int metric : CHARTED_METRICS) {
+                double timestamp = metricsStore.getLatestTimestamp(metric);
+                if (!Double.isNaN(timestamp)) {
+                    latest = Math.max(latest, timestamp);
+                }
             }
-
-            hrDataSet.notifyDataSetChanged();
-            respirationDataSet.notifyDataSetChanged();
-
-            hrLineData.notifyDataChanged();
-            respirationLineData.notifyDataChanged();
-            hrChart.notifyDataSetChanged();
-            respirationChart.notifyDataSetChanged();
-
-            hrChart.invalidate();
-            respirationChart.invalidate();
-
-            hrChart.setVisibleXRangeMaximum(10);
-            respirationChart.setVisibleXRangeMaximum(10);
-            hrChart.moveViewToX(hrLineData.getEntryCount());
-            respirationChart.moveViewToX(respirationLineData.getEntryCount());
-        }
-    }
-
-
-    private void addNewBPData(List<Double> bpSystolicData, List<Double> bpDiastolicData) {
-        if (bpSystolicData == null || bpDiastolicData == null) {
-            Log.e(TAG, "BP Systolic or Diastolic data lists are null, cannot add new data");
-            return; // Exit early if any of the data lists are null
-        }
-
-        int newIndex = bpSystolicEntries.size();
-
-        if (newIndex < bpSystolicData.size() && newIndex < bpDiastolicData.size()) {
-            // Apply smoothing to BP data
-            float smoothedSystolicBP = smoothData(bpSystolicData);
-            float smoothedDiastolicBP = smoothData(bpDiastolicData);
-
-            bpSystolicEntries.add(new Entry(newIndex, smoothedSystolicBP));
-            bpDiastolicEntries.add(new Entry(newIndex, smoothedDiastolicBP));
-
-            // Ensure the size of the data entries does not exceed the maximum limit
-            if (bpSystolicEntries.size() > maxEntries) {
-                bpSystolicEntries.removeFirst();
-                bpDiastolicEntries.removeFirst();
-                updateIndexes(bpSystolicEntries, bpDiastolicEntries);
+            if (latest == Double.NEGATIVE_INFINITY) {
+                return;
             }
-
-            // Notify the data set of the change
-            bpSystolicDataSet.notifyDataSetChanged();
-            bpDiastolicDataSet.notifyDataSetChanged();
-
-            // Notify the chart data of the change and refresh the chart
-            bpLineData.notifyDataChanged();
-            bpChart.notifyDataSetChanged();
-
-            // Invalidate the chart to redraw with new data
-            bpChart.invalidate();
-
-            // Scroll to the last entry
-            bpChart.setVisibleXRangeMaximum(10);
-            bpChart.moveViewToX(bpLineData.getEntryCount());
+            // The range excludes its end, so end just after the newest reading
+            double end = Math.nextUp(latest);
+            double start = end - rangeSeconds;
+            LineDataSet hr = loadSeries(MetricsStore.METRIC_HEART_RATE, start, end, "HR", R.color.colorHR);
+            LineDataSet respiration = loadSeries(MetricsStore.METRIC_RESPIRATORY_RATE, start, end,
+                    "Respiration", R.color.colorRespiration);
+            LineDataSet systolic = loadSeries(MetricsStore.METRIC_SYSTOLIC_BP, start, end,
+                    "Systolic BP", R.color.colorBPSystolic);
+            LineDataSet diastolic = loadSeries(MetricsStore.METRIC_DIASTOLIC_BP, start, end,
+                    "Diastolic BP", R.color.colorBPDiastolic);
+            runOnUiThread(() -> {
+                if (isFinishing() || isDestroyed()) {
+                    return;
+                }
+                showData(hrChart, new LineData(hr));
+                showData(respirationChart, new LineData(respiration));
+                showData(bpChart, new LineData(systolic, diastolic));
+            });
+        } catch (Exception e) {
+            Log.e(TAG, "Error loading chart data", e);
         }
     }
 
-    private float smoothData(List<Double> data) {
-        int size = data.size();
-        if (size < 3) {
-            return data.get(size - 1).floatValue();
+    // Readings or bucket means of one metric, at minutes relative to the end of the range
+    private LineDataSet loadSeries(int metric, double start, double end, String label, int colorResource) {
+        List<Entry> entries = new ArrayList<>();
+        if (metricsStore.count(metric, start, end) <= MAX_POINTS) {
+            try (MetricCursor cursor = metricsStore.query(metric, start, end, MAX_POINTS)) {
+                while (cursor.moveToNext()) {
+                    entries.add(new Entry((float) ((cursor.getTimestamp() - end) / 60.0), (float) cursor.getValue()));
+                }
+            }
+        } else {
+            try (RollupCursor cursor = metricsStore.queryRollups(metric, start, end, MAX_POINTS)) {
+                while (cursor.moveToNext()) {
+                    entries.add(new Entry((float) ((cursor.getBucketStart() - end) / 60.0), (float) cursor.getMean()));
+                }
+            }
         }
-
-        double last = data.get(size - 1);
-        double secondLast = data.get(size - 2);
-        double thirdLast = data.get(size - 3);
-
-        // Apply moving average smoothing
-        return (float) ((last + secondLast + thirdLast) / 3);
+        LineDataSet dataSet = new LineDataSet(entries, label);
+        dataSet.setColor(getResources().getColor(colorResource));
+        dataSet.setLineWidth(2f);
+        dataSet.setDrawCircles(false);
+        return dataSet;
     }
 
-
-    private void updateIndexes(LinkedList<Entry>... entriesLists) {
-        for (LinkedList<Entry> entries : entriesLists) {
-            for (int i = 0; i < entries.size(); i++) {
-                entries.get(i).setX(i);
-            }
-        }
+    private void showData(LineChart chart, LineData data) {
+        chart.setData(data);
+        chart.notifyDataSetChanged();
+        chart.invalidate();
     }
 
     @Override
     protected void onStart() {
         super.onStart();
-        isActivityVisible = true;
-        handler.post(updateHRAndRespirationRunnable);
-        handler.post(updateBPRunnable);
+        handler.post(refreshRunnable);
     }
 
     @Override
     protected void onStop() {
         super.onStop();
-        isActivityVisible = false;
-        handler.removeCallbacks(updateHRAndRespirationRunnable);
-        handler.removeCallbacks(updateBPRunnable);
+        handler.removeCallbacks(refreshRunnable);
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        handler.removeCallbacks(updateHRAndRespirationRunnable);
-        handler.removeCallbacks(updateBPRunnable);
+        handler.removeCallbacks(refreshRunnable);
+        queryExecutor.execute(() -> MetricsStore.release(metricsStore));
+        queryExecutor.shutdown();
     }
 }
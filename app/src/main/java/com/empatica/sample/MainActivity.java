@@ -9,13 +9,13 @@ import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Debug;
 import android.provider.Settings;
 import android.util.Log;
 import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.LinearLayout;
-import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
@@ -23,7 +23,6 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
-import com.empatica.empalink.EmpaDeviceManager;
 import com.empatica.empalink.EmpaticaDevice;
 import com.empatica.empalink.config.EmpaSensorStatus;
 import com.empatica.empalink.config.EmpaSensorType;
@@ -31,53 +30,83 @@ import com.empatica.empalink.config.EmpaStatus;
 import com.empatica.empalink.delegate.EmpaDataDelegate;
 import com.empatica.empalink.delegate.EmpaStatusDelegate;
 
-import java.io.Serializable;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
-public class MainActivity extends AppCompatActivity implements EmpaDataDelegate, EmpaStatusDelegate {
+public class MainActivity extends AppCompatActivity implements EmpaDataDelegate, EmpaStatusDelegate,
+        DeviceSession.Listener, EmpaDeviceConnection.Listener {
 
     private static final String TAG = "MainActivity";
     private static final int REQUEST_ENABLE_BT = 1;
-    private static final int REQUEST_PERMISSION_ACCESS_FINE_LOCATION = 1;
-
-    private EmpaDeviceManager deviceManager;
 
-    private TextView accel_xLabel;
-    private TextView bvpLabel;
-    private TextView edaLabel;
-    private TextView ibiLabel;
-    private TextView statusLabel;
+    // Intent extras that replay a recorded session: a directory name under files/sessions or
+    // "latest", and a speed multiplier where 0 means as fast as possible
+    public static final String EXTRA_REPLAY_SESSION = "replay_session";
+    public static final String EXTRA_REPLAY_SPEED = "replay_speed";
+    // Intent extras that stream simulated wristbands instead: how many, and a speed multiplier
+    public static final String EXTRA_SIMULATE_DEVICES = "simulate_devices";
+    public static final String EXTRA_SIMULATE_SPEED = "simulate_speed";
+    // Shortest time between two label refreshes in milliseconds; 0 refreshes on every display frame
+    public static final String EXTRA_LABEL_INTERVAL = "label_interval_ms";
+    private static final int REQUEST_PERMISSION_ACCESS_FINE_LOCATION = 1;
 
-    private TextView deviceNameLabel;
-    private TextView temperatureLabel;
-    private TextView batteryLabel;
+    // How often the standard HRV window's metrics are stored, in seconds
+    private static final double HRV_SAVE_INTERVAL = 30.0;
+    // Wristbands connected at the same time; scanning stops when this many are connected
+    private static final int MAX_DEVICES = 4;
+    // Name of the session fed by a replayed recording
+    private static final String REPLAY_SESSION_NAME = "replay";
+    // Labels refresh at most ten times a second by default; faster changes cannot be read anyway
+    private static final long DEFAULT_LABEL_INTERVAL_MILLIS = 100;
+
+    private EmpaSessionManager sessionManager; // Scans, and connects every device to its own session
+
+    // Labels are updated from any thread and refreshed together once per frame by the dispatcher
+    private UiDispatcher uiDispatcher;
+    private UiDispatcher.Label accel_xLabel;
+    private UiDispatcher.Label bvpLabel;
+    private UiDispatcher.Label edaLabel;
+    private UiDispatcher.Label ibiLabel;
+    private UiDispatcher.Label statusLabel;
+
+    private UiDispatcher.Label deviceNameLabel;
+    private UiDispatcher.Label temperatureLabel;
+    private UiDispatcher.Label batteryLabel;
     private LinearLayout dataCnt;
-    private TextView heartRateLabel;
-    private TextView respirationRateLabel;
-    private TextView systolicPressureLabel;
-    private TextView diastolicPressureLabel;
+    private UiDispatcher.Label heartRateLabel;
+    private UiDispatcher.Label respirationRateLabel;
+    private UiDispatcher.Label systolicPressureLabel;
+    private UiDispatcher.Label diastolicPressureLabel;
     private Boolean isConnected = false;
-    private TextView wristStatusLabel;
+    private UiDispatcher.Label wristStatusLabel;
     private Button toggleStreamingButton;
     private boolean isStreaming = false;
 
-    private HeartRateCalculator heartRateCalculator;
-    private RespiratoryRateCalculator respiratoryRateCalculator;
-    private BloodPressureCalculator bloodPressureCalculator;
-    private List<Float> hrData = new ArrayList<>(); // List to store heart rate data
-    private List<Float> respirationData = new ArrayList<>(); // List to store respiration rate data
-    private List<Double> systolicBPData = new ArrayList<>(); // List to store systolic blood pressure data
-    private List<Double> diastolicBPData = new ArrayList<>(); // List to store diastolic blood pressure data
+    private DeviceSessionManager deviceSessions; // One pipeline, worker and set of engines per device
+    // The device shown on screen, recorded and stored; the others are processed but not stored
+    private volatile EmpaDeviceConnection selectedConnection;
+    private volatile int userAge = 0; // Applied to the blood pressure calculator of every session
+    private double lastHrvSave = 0.0; // Timestamp of the last stored HRV summary, written on the selected worker
 
     private boolean isDeviceManagerInitialized = false;
     private EmpaStatus currentStatus = EmpaStatus.DISCONNECTED; // Track the current status
 
-    private BloodPressureDBHelper bloodPressureDBHelper; // Add instance of BloodPressureDBHelper
+    private MetricsStore metricsStore; // Long-lived store for all derived metrics, batches inserts
+    // Runs store maintenance (import, flush, close) off the main thread; readings are saved on the workers
+    private final ExecutorService storeExecutor = Executors.newSingleThreadExecutor();
 
-    private Timer bloodPressureTimer; // Timer for scheduling blood pressure updates
+    private Timer reportTimer; // Reports throughput and writes out waiting batches
+    private final FileHandler fileHandler = new FileHandler();
+    private final AndroidDiagnosticsSink diagnostics = new AndroidDiagnosticsSink();
+    private volatile RawSessionRecorder rawRecorder; // Raw channels of the connected session, if any
+    private SessionReplayer sessionReplayer; // Replays a recorded session instead of a live device
+    private final List<DeviceSimulator> simulators = new ArrayList<>(); // Virtual devices, if simulating
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -85,18 +114,20 @@ public class MainActivity extends AppCompatActivity implements EmpaDataDelegate,
         setContentView(R.layout.activity_main);
 
         // Initialize vars that reference UI components
-        statusLabel = findViewById(R.id.status_label);
-        accel_xLabel = findViewById(R.id.accel_x);
-        bvpLabel = findViewById(R.id.bvp);
-        edaLabel = findViewById(R.id.eda);
-        ibiLabel = findViewById(R.id.ibi);
-        temperatureLabel = findViewById(R.id.temperature);
-        batteryLabel = findViewById(R.id.battery);
-        heartRateLabel = findViewById(R.id.heartrate);
-        respirationRateLabel = findViewById(R.id.respiration_rate);
-        systolicPressureLabel = findViewById(R.id.bp_systolic);
-        diastolicPressureLabel = findViewById(R.id.bp_diastolic);
-        wristStatusLabel = findViewById(R.id.wrist_status_label);
+        uiDispatcher = new UiDispatcher(getIntent().getLongExtra(EXTRA_LABEL_INTERVAL, DEFAULT_LABEL_INTERVAL_MILLIS));
+        statusLabel = uiDispatcher.textLabel(findViewById(R.id.status_label));
+        deviceNameLabel = uiDispatcher.textLabel(findViewById(R.id.device_name_label));
+        accel_xLabel = uiDispatcher.numberLabel(findViewById(R.id.accel_x), "%.0f");
+        bvpLabel = uiDispatcher.numberLabel(findViewById(R.id.bvp), "%.2f");
+        edaLabel = uiDispatcher.numberLabel(findViewById(R.id.eda), "%.3f");
+        ibiLabel = uiDispatcher.numberLabel(findViewById(R.id.ibi), "%.3f");
+        temperatureLabel = uiDispatcher.numberLabel(findViewById(R.id.temperature), "%.2f");
+        batteryLabel = uiDispatcher.numberLabel(findViewById(R.id.battery), "%.0f %%");
+        heartRateLabel = uiDispatcher.numberLabel(findViewById(R.id.heartrate), "%.2f BPM");
+        respirationRateLabel = uiDispatcher.numberLabel(findViewById(R.id.respiration_rate), "%.2f breaths/min");
+        systolicPressureLabel = uiDispatcher.numberLabel(findViewById(R.id.bp_systolic), "%.2f mmHg");
+        diastolicPressureLabel = uiDispatcher.numberLabel(findViewById(R.id.bp_diastolic), "%.2f mmHg");
+        wristStatusLabel = uiDispatcher.textLabel(findViewById(R.id.wrist_status_label));
         dataCnt = findViewById(R.id.dataArea);
 
         final Button connectButton = findViewById(R.id.connectButton);
@@ -105,21 +136,46 @@ public class MainActivity extends AppCompatActivity implements EmpaDataDelegate,
         Button showChartButton = findViewById(R.id.show_chart_button);
         showChartButton.setOnClickListener(v -> showChart());
 
-        heartRateCalculator = new HeartRateCalculator();
-        respiratoryRateCalculator = new RespiratoryRateCalculator();//Respration Rate Calculation
-        bloodPressureCalculator = new BloodPressureCalculator(this); // Initialize with context only
-        bloodPressureDBHelper = new BloodPressureDBHelper(MainActivity.this); // Initialize BloodPressureDBHelper
+        Button debugMetricsButton = findViewById(R.id.debug_metrics_button);
+        debugMetricsButton.setOnClickListener(v -> startActivity(new Intent(this, DebugMetricsActivity.class)));
+
+        // Send logs and metrics of the processing code to logcat
+        Diagnostics.setSink(diagnostics);
+        // ART's allocation and GC totals for the performance dump
+        PerformanceMetrics.setAllocationSource(new PerformanceMetrics.AllocationSource() {
+            @Override
+            public long getAllocatedBytes() {
+                return runtimeStat("art.gc.bytes-allocated");
+            }
+
+            @Override
+            public long getGcCount() {
+                return runtimeStat("art.gc.gc-count");
+            }
+        });
+        // Every device gets its own pipeline and engines, all reporting back to this activity
+        deviceSessions = new DeviceSessionManager(deviceName -> {
+            DeviceSession session = new DeviceSession(deviceName, this);
+            session.getBloodPressureCalculator().setUserAge(userAge);
+            return session;
+        });
+        metricsStore = MetricsStore.acquire(MainActivity.this);
+        storeExecutor.execute(metricsStore::importLegacyDatabases);
 
-        checkPermissionsAndInitialize();
+        if (!startReplayFromIntent(getIntent()) && !startSimulationFromIntent(getIntent())) {
+            checkPermissionsAndInitialize();
+        }
         Intent intent = new Intent(this, BluetoothService.class);
         startService(intent); // Ensure the service is running even if the activity is not bound
 
-        // Schedule blood pressure updates every 5 seconds
-        bloodPressureTimer = new Timer();
-        bloodPressureTimer.scheduleAtFixedRate(new TimerTask() {
+        // Every 5 seconds, report throughput and write out batches that have been waiting too long
+        // while readings are sparse
+        reportTimer = new Timer();
+        reportTimer.scheduleAtFixedRate(new TimerTask() {
             @Override
             public void run() {
-                runOnUiThread(() -> updateBloodPressure());
+                deviceSessions.reportThroughput();
+                storeExecutor.execute(metricsStore::flushIfDue);
             }
         }, 0, 5000);
     }
@@ -134,7 +190,10 @@ public class MainActivity extends AppCompatActivity implements EmpaDataDelegate,
         builder.setPositiveButton("OK", (dialog, which) -> {
             try {
                 int age = Integer.parseInt(input.getText().toString());
-                bloodPressureCalculator.setUserAge(age); // Set the age in BloodPressureCalculator
+                userAge = age; // Set the age in the BloodPressureCalculator of every device
+                for (DeviceSession session : deviceSessions.getSessions()) {
+                    session.getBloodPressureCalculator().setUserAge(age);
+                }
                 toggleConnection(); // Proceed to toggle connection after age is input
             } catch (NumberFormatException e) {
                 Log.e(TAG, "Invalid age input", e);
@@ -150,9 +209,8 @@ public class MainActivity extends AppCompatActivity implements EmpaDataDelegate,
     private void toggleConnection() {
         if (!isConnected) {
             if (isDeviceManagerInitialized) {
-                deviceManager = EmpaManagerSingleton.getInstance(MainActivity.this, MainActivity.this, MainActivity.this).getDeviceManager();
-                if (deviceManager != null && currentStatus == EmpaStatus.READY) {
-                    deviceManager.startScanning();
+                if (sessionManager.isInitialized() && currentStatus == EmpaStatus.READY) {
+                    sessionManager.startScanning();
                     isConnected = true;
                     updateConnectButtonText();
                 } else {
@@ -164,7 +222,9 @@ public class MainActivity extends AppCompatActivity implements EmpaDataDelegate,
                 Toast.makeText(MainActivity.this, "Device Manager is not initialized", Toast.LENGTH_SHORT).show();
             }
         } else {
-            EmpaManagerSingleton.getInstance(MainActivity.this, MainActivity.this, MainActivity.this).disconnect();
+            sessionManager.stopScanning();
+            sessionManager.disconnectAll();
+            selectConnection(null, false);
             isConnected = false;
             updateConnectButtonText();
         }
@@ -195,21 +255,14 @@ public class MainActivity extends AppCompatActivity implements EmpaDataDelegate,
     }
 
     private void initializeDeviceManager() {
-        deviceManager = EmpaManagerSingleton.getInstance(this, this, this).getDeviceManager();
+        if (sessionManager == null) {
+            sessionManager = new EmpaSessionManager(this, this, this, deviceSessions, this);
+        }
         isDeviceManagerInitialized = true;
     }
 
     private void showChart() {
-        Log.d(TAG, "HRData size: " + hrData.size());
-        Log.d(TAG, "RespirationData size: " + respirationData.size());
-        Log.d(TAG, "SystolicBPData size: " + systolicBPData.size());
-        Log.d(TAG, "DiastolicBPData size: " + diastolicBPData.size());
-
         Intent intent = new Intent(MainActivity.this, HeartRateChartActivity.class);
-        intent.putExtra("HRData", (Serializable) hrData);
-        intent.putExtra("RespirationData", (Serializable) respirationData);
-        intent.putExtra("SystolicBPData", (Serializable) systolicBPData);
-        intent.putExtra("DiastolicBPData", (Serializable) diastolicBPData);
         startActivity(intent);
     }
 
@@ -272,111 +325,345 @@ public class MainActivity extends AppCompatActivity implements EmpaDataDelegate,
     @Override
     protected void onPause() {
         super.onPause();
-        if (deviceManager != null) {
-            deviceManager.stopScanning();
+        if (sessionManager != null) {
+            sessionManager.stopScanning();
         }
+        // Persist queued readings in case the process is killed in the background
+        storeExecutor.execute(metricsStore::flush);
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (deviceManager != null) {
-            deviceManager.cleanUp();
-        }
         // Cancel the timer when the activity is destroyed
-        if (bloodPressureTimer != null) {
-            bloodPressureTimer.cancel();
+        if (reportTimer != null) {
+            reportTimer.cancel();
         }
+        uiDispatcher.stop();
+        if (sessionReplayer != null) {
+            sessionReplayer.stop();
+        }
+        for (DeviceSimulator simulator : simulators) {
+            simulator.stop();
+        }
+        if (sessionManager != null) {
+            sessionManager.cleanUp();
+        }
+        stopRawRecording();
+        // The workers save the readings still queued there in the background, then the store closes
+        deviceSessions.closeAll();
+        storeExecutor.execute(() -> {
+            deviceSessions.awaitStopped();
+            MetricsStore.release(metricsStore);
+        });
+        storeExecutor.shutdown();
     }
 
+    // Data callbacks of the selected device, after its session has processed them
+
     @Override
     public void didReceiveAcceleration(int x, int y, int z, double timestamp) {
-        updateLabel(accel_xLabel, "" + x);
+        RawSessionRecorder recorder = rawRecorder;
+        if (recorder != null) {
+            recorder.recordAcceleration(timestamp, x, y, z);
+        }
+        accel_xLabel.set(x);
     }
 
     @Override
     public void didReceiveBVP(float bvp, double timestamp) {
-        updateLabel(bvpLabel, "" + bvp);
+        recordRaw(RawChannel.BVP, timestamp, bvp);
+        bvpLabel.set(bvp);
+    }
+
+    @Override
+    public void didReceiveGSR(float gsr, double timestamp) {
+        recordRaw(RawChannel.EDA, timestamp, gsr);
+        edaLabel.set(gsr);
+    }
+
+    @Override
+    public void didReceiveIBI(float ibi, double timestamp) {
+        recordRaw(RawChannel.IBI, timestamp, ibi);
+        Log.d(TAG, "IBI: " + ibi + " at timestamp: " + timestamp);
+        ibiLabel.set(ibi);
+    }
 
-        // Process BVP data for heart rate and respiratory rate calculation
-        heartRateCalculator.didReceiveBVP(bvp, timestamp);
-        respiratoryRateCalculator.didReceiveBVP(bvp);
-        bloodPressureCalculator.didReceiveBVP(bvp);
+    @Override
+    public void didReceiveTemperature(float temp, double timestamp) {
+        recordRaw(RawChannel.TEMPERATURE, timestamp, temp);
+        temperatureLabel.set(temp);
+    }
+
+    // Results of every device's session; only the selected device is shown and stored
+
+    private boolean isSelected(DeviceSession session) {
+        EmpaDeviceConnection connection = selectedConnection;
+        return connection != null && connection.getSession() == session;
+    }
+
+    // Runs on the session's worker thread after the pipeline has consumed a BVP sample
+    @Override
+    public void onBvpProcessed(DeviceSession session, double timestamp) {
+        if (!isSelected(session)) {
+            return;
+        }
+        // The labels follow the continuous estimates, refreshed every second
+        ContinuousRateEstimator continuousRateEstimator = session.getContinuousRateEstimator();
+        long arrivalNanos = session.getWorker().getCurrentArrivalNanos();
+        if (continuousRateEstimator.isHeartRateReady()) {
+            heartRateLabel.set(continuousRateEstimator.getHeartRate(), arrivalNanos);
+        }
+        if (continuousRateEstimator.isRespiratoryRateReady()) {
+            respirationRateLabel.set(continuousRateEstimator.getRespiratoryRate(), arrivalNanos);
+        }
 
         // Check if heart rate calculator is ready to calculate heart rate
+        HeartRateCalculator heartRateCalculator = session.getHeartRateCalculator();
         if (heartRateCalculator.isReady()) {
             // Get calculated heart rate
             float heartRate = heartRateCalculator.getHeartRate();
 
-            // Add heart rate to the list for chart display
-            hrData.add(heartRate);
-
-            // Update UI with heart rate
-            updateLabel(heartRateLabel, String.format("%.2f BPM", heartRate));
-
-            // Save the heart rate data to the database
-            HeartRateDBHelper dbHelper = new HeartRateDBHelper(MainActivity.this);
-            dbHelper.saveHeartRate(timestamp, heartRate);
+            // Queue the heart rate for the next batched database write
+            metricsStore.save(MetricsStore.METRIC_HEART_RATE, timestamp, heartRate);
+            metricsStore.save(MetricsStore.METRIC_HEART_RATE_QUALITY, timestamp, heartRateCalculator.getQuality());
         }
 
         // Check if respiratory rate calculator is ready to calculate respiratory rate
+        RespiratoryRateCalculator respiratoryRateCalculator = session.getRespiratoryRateCalculator();
         if (respiratoryRateCalculator.isReady()) {
             // Get calculated respiratory rate
             float respiratoryRate = respiratoryRateCalculator.getRespiratoryRate();
 
-            // Add respiratory rate to the list for chart display
-            respirationData.add(respiratoryRate);
-
-            // Update UI with respiratory rate
-            updateLabel(respirationRateLabel, String.format("%.2f breaths/min", respiratoryRate));
+            // Queue the respiratory rate for the next batched database write
+            metricsStore.save(MetricsStore.METRIC_RESPIRATORY_RATE, timestamp, respiratoryRate);
+            metricsStore.save(MetricsStore.METRIC_RESPIRATORY_RATE_QUALITY, timestamp, respiratoryRateCalculator.getQuality());
         }
-    }
 
-    private void updateBloodPressure() {
-        // Check if blood pressure calculator is ready to estimate blood pressure
+        // Check if blood pressure calculator has estimated blood pressure for a new window
+        BloodPressureCalculator bloodPressureCalculator = session.getBloodPressureCalculator();
         if (bloodPressureCalculator.isReady()) {
-            // Get estimated blood pressure
             double systolicBP = bloodPressureCalculator.getSystolicBloodPressure();
             double diastolicBP = bloodPressureCalculator.getDiastolicBloodPressure();
+            systolicPressureLabel.set(systolicBP, arrivalNanos);
+            diastolicPressureLabel.set(diastolicBP, arrivalNanos);
 
-            // Add blood pressure data to the list for chart display
-            systolicBPData.add(systolicBP);
-            diastolicBPData.add(diastolicBP);
+            // Queue the blood pressure for the next batched database write
+            metricsStore.save(MetricsStore.METRIC_SYSTOLIC_BP, timestamp, systolicBP);
+            metricsStore.save(MetricsStore.METRIC_DIASTOLIC_BP, timestamp, diastolicBP);
+            metricsStore.save(MetricsStore.METRIC_BLOOD_PRESSURE_QUALITY, timestamp, bloodPressureCalculator.getQuality());
+        }
+    }
 
-            // Update UI with blood pressure values
-            updateBloodPressureUI(systolicBP, diastolicBP);
+    // Runs on the session's worker thread for every beat its HRV engine accepted
+    @Override
+    public void onBeat(DeviceSession session, double timestamp) {
+        if (!isSelected(session)) {
+            return;
+        }
+        HrvEngine hrvEngine = session.getHrvEngine();
+        metricsStore.save(MetricsStore.METRIC_BEAT_HEART_RATE, timestamp, hrvEngine.getHeartRate());
+
+        HrvEngine.Window window = hrvEngine.getWindow(DeviceSession.HRV_STANDARD_WINDOW_INDEX);
+        if (timestamp - lastHrvSave >= HRV_SAVE_INTERVAL && window.getBeatCount() >= 2) {
+            lastHrvSave = timestamp;
+            metricsStore.save(MetricsStore.METRIC_RMSSD, timestamp, window.getRmssd());
+            metricsStore.save(MetricsStore.METRIC_SDNN, timestamp, window.getSdnn());
+            metricsStore.save(MetricsStore.METRIC_PNN50, timestamp, window.getPnn50());
+            HrvEngine.Window shortWindow = hrvEngine.getWindow(DeviceSession.HRV_SHORT_WINDOW_INDEX);
+            Log.d(TAG, String.format("HRV %.0f s: RMSSD %.1f ms, SDNN %.1f ms, pNN50 %.1f%%",
+                    shortWindow.getSeconds(), shortWindow.getRmssd(), shortWindow.getSdnn(), shortWindow.getPnn50()));
+        }
+    }
 
-            // Save the blood pressure data to the database
-            double timestamp = System.currentTimeMillis() / 3000.0; // Current timestamp in seconds
-            bloodPressureDBHelper.saveBloodPressure(timestamp, systolicBP, diastolicBP);
+    // Runs on the callback thread at the end of every accelerometer epoch
+    @Override
+    public void onAccelerometerEpoch(DeviceSession session, AccelerometerEpoch epoch) {
+        if (!isSelected(session)) {
+            return;
         }
+        // The epoch object is reused, so copy its values before handing them to the worker
+        double start = epoch.getStartTimestamp();
+        double enmo = epoch.getEnmo();
+        double activityCount = epoch.getActivityCount();
+        int steps = epoch.getSteps();
+        double movingFraction = epoch.getMovingFraction();
+        session.execute(() -> {
+            metricsStore.save(MetricsStore.METRIC_ENMO, start, enmo);
+            metricsStore.save(MetricsStore.METRIC_ACTIVITY_COUNT, start, activityCount);
+            metricsStore.save(MetricsStore.METRIC_STEPS, start, steps);
+            metricsStore.save(MetricsStore.METRIC_MOVING_FRACTION, start, movingFraction);
+        });
     }
 
-    private void updateBloodPressureUI(double systolicBP, double diastolicBP) {
-        updateLabel(systolicPressureLabel, String.format("%.2f mmHg", systolicBP));
-        updateLabel(diastolicPressureLabel, String.format("%.2f mmHg", diastolicBP));
+    // Called on the callback thread by the EDA engine; the store writes happen on the worker
+    @Override
+    public void onScr(DeviceSession session, double onsetTimestamp, double amplitude, double riseTime) {
+        if (!isSelected(session)) {
+            return;
+        }
+        session.execute(() -> {
+            metricsStore.save(MetricsStore.METRIC_SCR_AMPLITUDE, onsetTimestamp, amplitude);
+            metricsStore.save(MetricsStore.METRIC_SCR_RISE_TIME, onsetTimestamp, riseTime);
+        });
     }
 
     @Override
-    public void didReceiveGSR(float gsr, double timestamp) {
-        updateLabel(edaLabel, "" + gsr);
+    public void onEdaSummary(DeviceSession session, double startTimestamp, double scrPerMinute, double tonicLevel,
+                             double meanAmplitude) {
+        if (!isSelected(session)) {
+            return;
+        }
+        session.execute(() -> {
+            metricsStore.save(MetricsStore.METRIC_SCR_RATE, startTimestamp, scrPerMinute);
+            metricsStore.save(MetricsStore.METRIC_EDA_TONIC, startTimestamp, tonicLevel);
+        });
     }
 
+    // Called on the callback thread by the temperature engine; the store writes happen on the worker
     @Override
-    public void didReceiveIBI(float ibi, double timestamp) {
-        Log.d(TAG, "IBI: " + ibi + " at timestamp: " + timestamp);
-        updateLabel(ibiLabel, "" + ibi);
+    public void onTemperatureChange(DeviceSession session, double timestamp, double delta) {
+        if (!isSelected(session)) {
+            return;
+        }
+        Log.i(TAG, String.format("Skin temperature shifted by %.2f C at %.0f", delta, timestamp));
+        session.execute(() -> metricsStore.save(MetricsStore.METRIC_TEMPERATURE_CHANGE, timestamp, delta));
     }
 
     @Override
-    public void didReceiveTemperature(float temp, double timestamp) {
-        updateLabel(temperatureLabel, "" + temp);
+    public void onTemperatureSummary(DeviceSession session, double startTimestamp, double mean, double min,
+                                     double max, int rejected) {
+        if (!isSelected(session)) {
+            return;
+        }
+        if (rejected > 0) {
+            Log.d(TAG, "Rejected " + rejected + " temperature samples since " + startTimestamp);
+        }
+        session.execute(() -> {
+            metricsStore.save(MetricsStore.METRIC_TEMPERATURE_MEAN, startTimestamp, mean);
+            metricsStore.save(MetricsStore.METRIC_TEMPERATURE_MIN, startTimestamp, min);
+            metricsStore.save(MetricsStore.METRIC_TEMPERATURE_MAX, startTimestamp, max);
+        });
+    }
+
+    private void recordRaw(RawChannel channel, double timestamp, float value) {
+        RawSessionRecorder recorder = rawRecorder;
+        if (recorder != null) {
+            recorder.record(channel, timestamp, value);
+        }
+    }
+
+    // Replays a recorded session given as an intent extra, for example from adb:
+    // am start -n com.empatica.sample/.MainActivity --es replay_session latest --ef replay_speed 0
+    private boolean startReplayFromIntent(Intent intent) {
+        String session = intent.getStringExtra(EXTRA_REPLAY_SESSION);
+        if (session == null) {
+            return false;
+        }
+        File sessionsRoot = new File(getFilesDir(), "sessions");
+        File sessionDirectory = "latest".equals(session)
+                ? fileHandler.findLatestSession(sessionsRoot)
+                : new File(sessionsRoot, session);
+        if (sessionDirectory == null || !sessionDirectory.isDirectory()) {
+            Log.e(TAG, "No recorded session " + session);
+            return false;
+        }
+        float speed = intent.getFloatExtra(EXTRA_REPLAY_SPEED, 1.0f);
+        Log.i(TAG, "Replaying " + sessionDirectory + " at speed " + speed);
+        statusLabel.setText("REPLAY");
+        EmpaDeviceConnection connection = new EmpaDeviceConnection(deviceSessions.open(REPLAY_SESSION_NAME), this);
+        // Replayed samples are shown and stored like a device's, but not recorded again
+        selectConnection(connection, false);
+        sessionReplayer = new SessionReplayer(fileHandler, sessionDirectory, connection, speed,
+                deliveredSamples -> {
+                    Log.i(TAG, "Replay finished after " + deliveredSamples + " samples");
+                    statusLabel.setText("REPLAY FINISHED");
+                });
+        show();
+        sessionReplayer.start();
+        return true;
+    }
+
+    // Streams simulated wristbands given as intent extras, for example from adb:
+    // am start -n com.empatica.sample/.MainActivity --ei simulate_devices 8 --ef simulate_speed 10
+    private boolean startSimulationFromIntent(Intent intent) {
+        int devices = intent.getIntExtra(EXTRA_SIMULATE_DEVICES, 0);
+        if (devices <= 0) {
+            return false;
+        }
+        float speed = intent.getFloatExtra(EXTRA_SIMULATE_SPEED, 1.0f);
+        Log.i(TAG, "Simulating " + devices + " devices at speed " + speed);
+        statusLabel.setText("SIMULATION");
+        double now = System.currentTimeMillis() / 1000.0;
+        for (int i = 0; i < devices; i++) {
+            String deviceName = String.format("SIM-%02d", i);
+            EmpaDeviceConnection connection = new EmpaDeviceConnection(deviceSessions.open(deviceName), this);
+            if (i == 0) {
+                selectConnection(connection, false);
+            }
+            // Spread the devices over resting heart and breathing rates, with occasional movement
+            SimulatedDeviceProfile profile = new SimulatedDeviceProfile()
+                    .setSeed(i)
+                    .setHeartRate(60.0 + 5.0 * (i % 8))
+                    .setRespiratoryRate(12.0 + i % 6)
+                    .setMotionArtifacts(0.2, 5.0)
+                    .setDropouts(0.05, 2.0);
+            DeviceSimulator simulator = new DeviceSimulator(deviceName, profile, new EmpaDelegateSink(connection),
+                    now, Double.POSITIVE_INFINITY, speed);
+            simulators.add(simulator);
+            simulator.start();
+        }
+        return true;
+    }
+
+    // Shows, stores and optionally records the device of the connection; null when none is left
+    private void selectConnection(EmpaDeviceConnection connection, boolean record) {
+        EmpaDeviceConnection previous = selectedConnection;
+        if (previous == connection) {
+            return;
+        }
+        if (previous != null) {
+            previous.setTap(null);
+        }
+        stopRawRecording();
+        selectedConnection = connection;
+        if (connection == null) {
+            deviceNameLabel.setText("");
+            hide();
+            return;
+        }
+        deviceNameLabel.setText(connection.getDeviceName());
+        if (record) {
+            startRawRecording();
+        }
+        connection.setTap(this);
+        show();
+    }
+
+    // Starts writing raw channels to a new session directory
+    private void startRawRecording() {
+        stopRawRecording();
+        try {
+            File sessionDirectory = fileHandler.createSessionDirectory(new File(getFilesDir(), "sessions"));
+            rawRecorder = new RawSessionRecorder(fileHandler, sessionDirectory);
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot start raw recording", e);
+        }
+    }
+
+    private void stopRawRecording() {
+        RawSessionRecorder recorder = rawRecorder;
+        rawRecorder = null;
+        if (recorder != null) {
+            Log.i(TAG, "Recorded " + recorder.getBytesWritten() + " bytes to " + recorder.getSessionDirectory());
+            recorder.close();
+        }
     }
 
     @Override
     public void didReceiveBatteryLevel(float battery, double timestamp) {
         Log.d(TAG, "Battery level: " + battery * 100 + "% at timestamp: " + timestamp);
-        updateLabel(batteryLabel, String.format("%.0f %%", battery * 100));
+        batteryLabel.set(battery * 100);
     }
 
     @Override
@@ -388,7 +675,7 @@ public class MainActivity extends AppCompatActivity implements EmpaDataDelegate,
     public void didEstablishConnection() {
         // Connection established
         dataCnt.setVisibility(View.VISIBLE);
-        wristStatusLabel.setVisibility(View.VISIBLE);
+        wristStatusLabel.getView().setVisibility(View.VISIBLE);
     }
 
     @Override
@@ -398,32 +685,64 @@ public class MainActivity extends AppCompatActivity implements EmpaDataDelegate,
 
     @Override
     public void didUpdateStatus(EmpaStatus status) {
-        currentStatus = status; // Update the current status
-        updateLabel(statusLabel, status.name());
-
-        if (status == EmpaStatus.READY) {
-            hide();
-        } else if (status == EmpaStatus.CONNECTED) {
-            show();
-        } else if (status == EmpaStatus.DISCONNECTED) {
-            updateLabel(deviceNameLabel, "");
-            hide();
+        currentStatus = status; // Status of the scanning manager
+        // The scanning manager never connects; device connections report through onConnectionStatus
+        if (selectedConnection == null) {
+            statusLabel.setText(status.name());
+            if (status == EmpaStatus.READY) {
+                hide();
+            }
         }
     }
 
     @Override
     public void didUpdateOnWristStatus(@EmpaSensorStatus final int status) {
-        String text = status == EmpaSensorStatus.ON_WRIST ? "ON WRIST" : "NOT ON WRIST";
-        updateLabel(wristStatusLabel, text);
+        updateWristLabel(status == EmpaSensorStatus.ON_WRIST);
+    }
+
+    private void updateWristLabel(boolean onWrist) {
+        wristStatusLabel.setText(onWrist ? "ON WRIST" : "NOT ON WRIST");
     }
 
     @Override
     public void didDiscoverDevice(EmpaticaDevice device, String deviceName, int rssi, boolean allowed) {
         Log.i(TAG, "didDiscoverDevice: " + deviceName + " allowed: " + allowed);
 
-        if (allowed) {
-            EmpaManagerSingleton.getInstance(this, this, this).stopScanning();
-            EmpaManagerSingleton.getInstance(this, this, this).connectDevice(device);
+        if (allowed && sessionManager.getConnection(deviceName) == null) {
+            sessionManager.connect(device, deviceName);
+            if (sessionManager.getConnectionCount() >= MAX_DEVICES) {
+                sessionManager.stopScanning();
+            }
+        }
+    }
+
+    // Called by each device's connection; the first connected device is the one shown
+    @Override
+    public void onConnectionStatus(EmpaDeviceConnection connection, EmpaStatus status) {
+        Log.i(TAG, connection.getDeviceName() + ": " + status.name());
+        runOnUiThread(() -> {
+            if (status == EmpaStatus.CONNECTED) {
+                if (selectedConnection == null) {
+                    statusLabel.setText(status.name());
+                    selectConnection(connection, true);
+                }
+            } else if (status == EmpaStatus.DISCONNECTED) {
+                sessionManager.disconnect(connection.getDeviceName());
+                if (connection == selectedConnection) {
+                    List<EmpaDeviceConnection> remaining = sessionManager.getConnections();
+                    selectConnection(remaining.isEmpty() ? null : remaining.get(0), true);
+                    if (remaining.isEmpty()) {
+                        statusLabel.setText(status.name());
+                    }
+                }
+            }
+        });
+    }
+
+    @Override
+    public void onWristStatus(EmpaDeviceConnection connection, boolean onWrist) {
+        if (connection == selectedConnection) {
+            updateWristLabel(onWrist);
         }
     }
 
@@ -457,12 +776,17 @@ public class MainActivity extends AppCompatActivity implements EmpaDataDelegate,
         super.onActivityResult(requestCode, resultCode, data);
     }
 
-    private void updateLabel(final TextView label, final String text) {
-        runOnUiThread(() -> {
-            if (label != null) {
-                label.setText(text);
-            }
-        });
+    // A counter of ART's runtime statistics, -1 if unavailable
+    private static long runtimeStat(String name) {
+        String value = Debug.getRuntimeStat(name);
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
     }
 
     void show() {
@@ -0,0 +1,44 @@
+package com.empatica.sample;
+
+import android.database.Cursor;
+
+import java.io.Closeable;
+
+/**
+ * Forward-only iterator over the {@code (timestamp, value)} rows returned by
+ * {@link MetricsStore#query(int, double, double, int)}.
+ *
+ * Rows are read straight from the underlying {@link Cursor} window, so iterating does not
+ * allocate an object per reading. Close it when done, ideally with try-with-resources.
+ */
+public class MetricCursor implements Closeable {
+
+    private final Cursor cursor;
+
+    MetricCursor(Cursor cursor) {
+        this.cursor = cursor;
+    }
+
+    // Advances to the next reading; returns false once all rows have been read
+    public boolean moveToNext() {
+        return cursor.moveToNext();
+    }
+
+    public double getTimestamp() {
+        return cursor.getDouble(0);
+    }
+
+    public double getValue() {
+        return cursor.getDouble(1);
+    }
+
+    // Total number of rows in the result
+    public int getCount() {
+        return cursor.getCount();
+    }
+
+    @Override
+    public void close() {
+        cursor.close();
+    }
+}
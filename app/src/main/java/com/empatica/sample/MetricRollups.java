@@ -0,0 +1,188 @@
+package com.empatica.sample;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.SparseArray;
+
+/**
+ * Incrementally maintained min/max/sum/count rollups of every metric at several resolutions.
+ *
+ * Each saved reading updates an in-memory delta for the bucket it falls into at every
+ * resolution. Deltas are merged into the rollup table on {@link #flush(SQLiteDatabase)} with an
+ * {@code INSERT OR IGNORE} followed by an additive {@code UPDATE}, so buckets that span an app
+ * restart or several flushes stay correct. Not thread-safe; {@link MetricsStore} serializes access.
+ */
+class MetricRollups {
+
+    // Bucket widths in seconds, finest first
+    static final int[] RESOLUTIONS = {1, 60, 3600};
+
+    // Closed buckets waiting for the next flush before one is forced
+    private static final int MAX_PENDING = 1024;
+
+    private final String table;
+    private final SparseArray<Bucket[]> openBuckets = new SparseArray<>();
+    private final Bucket[] pending = new Bucket[MAX_PENDING];
+    private int pendingCount = 0;
+    private SQLiteStatement insertStatement;
+    private SQLiteStatement updateStatement;
+
+    MetricRollups(String table) {
+        this.table = table;
+        for (int i = 0; i < MAX_PENDING; i++) {
+            pending[i] = new Bucket();
+        }
+    }
+
+    // Returns the start of the bucket containing the timestamp
+    static double bucketStart(double timestamp, int resolution) {
+        return Math.floor(timestamp / resolution) * resolution;
+    }
+
+    // Adds one reading; returns true when closed buckets have piled up and should be flushed
+    boolean add(int metric, double timestamp, double value) {
+        Bucket[] buckets = openBuckets.get(metric);
+        if (buckets == null) {
+            buckets = new Bucket[RESOLUTIONS.length];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new Bucket();
+            }
+            openBuckets.put(metric, buckets);
+        }
+        for (int i = 0; i < RESOLUTIONS.length; i++) {
+            Bucket bucket = buckets[i];
+            double start = bucketStart(timestamp, RESOLUTIONS[i]);
+            if (bucket.count > 0 && bucket.start != start) {
+                pending[pendingCount++].copyFrom(bucket);
+                bucket.count = 0;
+            }
+            if (bucket.count == 0) {
+                bucket.reset(metric, RESOLUTIONS[i], start);
+            }
+            bucket.add(value);
+        }
+        // One reading can close a bucket per resolution, so leave room for the next one
+        return pendingCount > MAX_PENDING - RESOLUTIONS.length;
+    }
+
+    // Merges closed and open deltas into the table; call inside a transaction
+    void flush(SQLiteDatabase db) {
+        if (insertStatement == null) {
+            insertStatement = db.compileStatement("INSERT OR IGNORE INTO " + table
+                    + " (metric, resolution, bucket, count, sum, min, max) VALUES (?, ?, ?, 0, 0, ?, ?)");
+            updateStatement = db.compileStatement("UPDATE " + table
+                    + " SET count = count + ?, sum = sum + ?, min = MIN(min, ?), max = MAX(max, ?)"
+                    + " WHERE metric = ? AND resolution = ? AND bucket = ?");
+        }
+        for (int i = 0; i < pendingCount; i++) {
+            write(pending[i]);
+        }
+        pendingCount = 0;
+        for (int m = 0; m < openBuckets.size(); m++) {
+            for (Bucket bucket : openBuckets.valueAt(m)) {
+                if (bucket.count > 0) {
+                    write(bucket);
+                    // Keep the bucket open, the table now holds what was accumulated so far
+                    bucket.clearDelta();
+                }
+            }
+        }
+    }
+
+    private void write(Bucket bucket) {
+        if (bucket.count == 0) {
+            return;
+        }
+        insertStatement.bindLong(1, bucket.metric);
+        insertStatement.bindLong(2, bucket.resolution);
+        insertStatement.bindDouble(3, bucket.start);
+        insertStatement.bindDouble(4, bucket.min);
+        insertStatement.bindDouble(5, bucket.max);
+        insertStatement.executeInsert();
+
+        updateStatement.bindLong(1, bucket.count);
+        updateStatement.bindDouble(2, bucket.sum);
+        updateStatement.bindDouble(3, bucket.min);
+        updateStatement.bindDouble(4, bucket.max);
+        updateStatement.bindLong(5, bucket.metric);
+        updateStatement.bindLong(6, bucket.resolution);
+        updateStatement.bindDouble(7, bucket.start);
+        updateStatement.executeUpdateDelete();
+    }
+
+    void close() {
+        if (insertStatement != null) {
+            insertStatement.close();
+            updateStatement.close();
+            insertStatement = null;
+            updateStatement = null;
+        }
+    }
+
+    // Recomputes every rollup from the raw rows, e.g. after rows were inserted in bulk
+    static void rebuild(SQLiteDatabase db, String rollupTable, String samplesTable) {
+        db.execSQL("DELETE FROM " + rollupTable);
+        for (int resolution : RESOLUTIONS) {
+            // Timestamps are positive, so truncating the quotient is the same as flooring it
+            db.execSQL("INSERT INTO " + rollupTable + " (metric, resolution, bucket, count, sum, min, max)"
+                    + " SELECT metric, " + resolution + ", CAST(timestamp / " + resolution + " AS INTEGER) * " + resolution + ","
+                    + " COUNT(*), SUM(value), MIN(value), MAX(value) FROM " + samplesTable
+                    + " GROUP BY metric, CAST(timestamp / " + resolution + " AS INTEGER)");
+        }
+    }
+
+    // Picks the finest resolution that returns at most maxPoints buckets for the range
+    static int resolutionFor(double start, double end, int maxPoints) {
+        for (int resolution : RESOLUTIONS) {
+            if ((end - start) / resolution <= maxPoints) {
+                return resolution;
+            }
+        }
+        return RESOLUTIONS[RESOLUTIONS.length - 1];
+    }
+
+    private static class Bucket {
+        int metric;
+        int resolution;
+        double start;
+        long count;
+        double sum;
+        double min;
+        double max;
+
+        void reset(int metric, int resolution, double start) {
+            this.metric = metric;
+            this.resolution = resolution;
+            this.start = start;
+            clearDelta();
+        }
+
+        void clearDelta() {
+            count = 0;
+            sum = 0.0;
+            min = Double.POSITIVE_INFINITY;
+            max = Double.NEGATIVE_INFINITY;
+        }
+
+        void add(double value) {
+            count++;
+            sum += value;
+            if (value < min) {
+                min = value;
+            }
+            if (value > max) {
+                max = value;
+            }
+        }
+
+        void copyFrom(Bucket other) {
+            metric = other.metric;
+            resolution = other.resolution;
+            start = other.start;
+            count = other.count;
+            sum = other.sum;
+            min = other.min;
+            max = other.max;
+        }
+    }
+}
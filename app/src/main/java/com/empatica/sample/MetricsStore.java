@@ -0,0 +1,283 @@
+package com.empatica.sample;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+import java.io.File;
+
+/**
+ * Single time-series store for every derived metric and raw channel.
+ *
+ * Each reading is one {@code (metric, timestamp, value)} row, indexed on
+ * {@code (metric, timestamp)} so range queries only touch the rows they return. Writes are
+ * queued and committed in batches by a {@link BatchedInsertWriter} over one long-lived WAL
+ * connection. Every batch also updates 1 s, 1 min and 1 h min/max/mean rollups in the same
+ * transaction, which {@link #queryRollups(int, double, double, int)} serves for long ranges.
+ * Timestamps are in seconds since the epoch, as delivered by the Empatica SDK.
+ *
+ * The activities share one store through {@link #acquire(Context)} and {@link #release(MetricsStore)},
+ * so there is one connection and one batch whatever screen is open, and a query also sees the
+ * readings another activity queued.
+ */
+public class MetricsStore extends SQLiteOpenHelper {
+
+    private static final String TAG = "MetricsStore";
+
+    // Database Version; bump and add a step to onUpgrade for every schema change
+    private static final int DATABASE_VERSION = 2;
+
+    // Database Name
+    private static final String DATABASE_NAME = "MetricsData";
+
+    // Table names
+    private static final String TABLE_SAMPLES = "Samples";
+    private static final String TABLE_ROLLUPS = "Rollups";
+
+    // Table Columns
+    private static final String KEY_METRIC = "metric";
+    private static final String KEY_TIMESTAMP = "timestamp";
+    private static final String KEY_VALUE = "value";
+
+    // Metric identifiers stored in the metric column; never renumber them
+    public static final int METRIC_HEART_RATE = 1;
+    public static final int METRIC_RESPIRATORY_RATE = 2;
+    public static final int METRIC_SYSTOLIC_BP = 3;
+    public static final int METRIC_DIASTOLIC_BP = 4;
+    public static final int METRIC_BEAT_HEART_RATE = 5;
+    public static final int METRIC_RMSSD = 6;
+    public static final int METRIC_SDNN = 7;
+    public static final int METRIC_PNN50 = 8;
+    // Signal quality (0 to 1) of the window behind each reading, stored at the reading's timestamp
+    public static final int METRIC_HEART_RATE_QUALITY = 9;
+    public static final int METRIC_RESPIRATORY_RATE_QUALITY = 10;
+    public static final int METRIC_BLOOD_PRESSURE_QUALITY = 11;
+    // Accelerometer epoch summaries, stored at the epoch start
+    public static final int METRIC_ENMO = 12;
+    public static final int METRIC_ACTIVITY_COUNT = 13;
+    public static final int METRIC_STEPS = 14;
+    public static final int METRIC_MOVING_FRACTION = 15;
+    // EDA summaries at the interval start, and one amplitude and rise time row per SCR at its onset
+    public static final int METRIC_SCR_RATE = 16;
+    public static final int METRIC_EDA_TONIC = 17;
+    public static final int METRIC_SCR_AMPLITUDE = 18;
+    public static final int METRIC_SCR_RISE_TIME = 19;
+    // Skin temperature summaries at the interval start, and one row per detected level shift
+    public static final int METRIC_TEMPERATURE_MEAN = 20;
+    public static final int METRIC_TEMPERATURE_MIN = 21;
+    public static final int METRIC_TEMPERATURE_MAX = 22;
+    public static final int METRIC_TEMPERATURE_CHANGE = 23;
+    public static final int METRIC_BVP = 100;
+    public static final int METRIC_EDA = 101;
+    public static final int METRIC_TEMPERATURE = 102;
+    public static final int METRIC_IBI = 103;
+    public static final int METRIC_BATTERY = 104;
+
+    // Readings are committed in batches of up to 256 rows, or after 10 seconds at the latest
+    private static final int MAX_BATCH_SIZE = 256;
+    private static final long MAX_BATCH_DELAY_MILLIS = 10000;
+
+    // Databases written by the previous per-metric helpers, imported once and then deleted
+    private static final String LEGACY_HEART_RATE_DATABASE = "HeartRateData";
+    private static final String LEGACY_BLOOD_PRESSURE_DATABASE = "BloodPressureData";
+
+    // The store shared by the activities, and the number of them holding it
+    private static MetricsStore shared;
+    private static int references = 0;
+
+    private final Context context;
+    private final BatchedInsertWriter writer = new BatchedInsertWriter(this,
+            "INSERT INTO " + TABLE_SAMPLES + " (" + KEY_METRIC + ", " + KEY_TIMESTAMP + ", " + KEY_VALUE + ") VALUES (?, ?, ?)",
+            3, MAX_BATCH_SIZE, MAX_BATCH_DELAY_MILLIS);
+    private final MetricRollups rollups = new MetricRollups(TABLE_ROLLUPS);
+
+    private MetricsStore(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this.context = context.getApplicationContext();
+        writer.setFlushListener(rollups::flush);
+    }
+
+    // Returns the shared store, opening it if no activity holds it; pair with release()
+    public static synchronized MetricsStore acquire(Context context) {
+        if (shared == null) {
+            shared = new MetricsStore(context);
+        }
+        references++;
+        return shared;
+    }
+
+    // Gives back a store from acquire(); the last release writes the queued readings and closes
+    // the store, so call it off the main thread
+    public static void release(MetricsStore store) {
+        synchronized (MetricsStore.class) {
+            if (store != shared || --references > 0) {
+                return;
+            }
+            shared = null;
+        }
+        store.close();
+    }
+
+    // Use write-ahead logging so batched writes and range reads do not block each other
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        db.enableWriteAheadLogging();
+    }
+
+    // Creating Table
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_SAMPLES + "("
+                + KEY_METRIC + " INTEGER NOT NULL,"
+                + KEY_TIMESTAMP + " REAL NOT NULL,"
+                + KEY_VALUE + " REAL NOT NULL" + ")");
+        db.execSQL("CREATE INDEX idx_samples_metric_timestamp ON " + TABLE_SAMPLES
+                + "(" + KEY_METRIC + ", " + KEY_TIMESTAMP + ")");
+        createRollupTable(db);
+    }
+
+    // Upgrading Database one version at a time, keeping existing readings
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            createRollupTable(db);
+            MetricRollups.rebuild(db, TABLE_ROLLUPS, TABLE_SAMPLES);
+        }
+    }
+
+    // Rollup rows: one per metric, resolution in seconds and bucket start timestamp
+    private void createRollupTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_ROLLUPS + "("
+                + "metric INTEGER NOT NULL,"
+                + "resolution INTEGER NOT NULL,"
+                + "bucket REAL NOT NULL,"
+                + "count INTEGER NOT NULL,"
+                + "sum REAL NOT NULL,"
+                + "min REAL NOT NULL,"
+                + "max REAL NOT NULL,"
+                + "PRIMARY KEY (metric, resolution, bucket)) WITHOUT ROWID");
+    }
+
+    // Queues a reading; it is written with the next batch, together with its rollups
+    public void save(int metric, double timestamp, double value) {
+        synchronized (writer) {
+            boolean rollupsFull = rollups.add(metric, timestamp, value);
+            writer.add(metric, timestamp, value);
+            if (rollupsFull) {
+                writer.flush();
+            }
+        }
+    }
+
+    // Writes queued readings if the oldest has waited longer than the batch delay
+    public void flushIfDue() {
+        writer.flushIfDue();
+    }
+
+    public void flush() {
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() {
+        synchronized (writer) {
+            writer.close();
+            rollups.close();
+        }
+        super.close();
+    }
+
+    /**
+     * Streams the readings of one metric with {@code start <= timestamp < end}, oldest first.
+     *
+     * @param limit maximum number of rows, or 0 for no limit
+     * @return a cursor the caller must close
+     */
+    public MetricCursor query(int metric, double start, double end, int limit) {
+        // Make queued readings visible to the query
+        writer.flush();
+
+        String selectQuery = "SELECT " + KEY_TIMESTAMP + ", " + KEY_VALUE + " FROM " + TABLE_SAMPLES
+                + " WHERE " + KEY_METRIC + " = ? AND " + KEY_TIMESTAMP + " >= ? AND " + KEY_TIMESTAMP + " < ?"
+                + " ORDER BY " + KEY_TIMESTAMP
+                + (limit > 0 ? " LIMIT " + limit : "");
+        Cursor cursor = getReadableDatabase().rawQuery(selectQuery, new String[]{
+                Integer.toString(metric), Double.toString(start), Double.toString(end)});
+        return new MetricCursor(cursor);
+    }
+
+    /**
+     * Streams aggregated readings of one metric for buckets starting in {@code [start, end)},
+     * oldest first, from the finest rollup resolution that yields at most {@code maxPoints} buckets.
+     *
+     * @return a cursor the caller must close
+     */
+    public RollupCursor queryRollups(int metric, double start, double end, int maxPoints) {
+        writer.flush();
+
+        int resolution = MetricRollups.resolutionFor(start, end, maxPoints);
+        Cursor cursor = getReadableDatabase().rawQuery("SELECT bucket, count, sum, min, max FROM " + TABLE_ROLLUPS
+                        + " WHERE metric = ? AND resolution = ? AND bucket >= ? AND bucket < ? ORDER BY bucket",
+                new String[]{Integer.toString(metric), Integer.toString(resolution),
+                        Double.toString(MetricRollups.bucketStart(start, resolution)), Double.toString(end)});
+        return new RollupCursor(cursor, resolution);
+    }
+
+    // Timestamp of the newest reading of one metric, or NaN if there is none
+    public double getLatestTimestamp(int metric) {
+        writer.flush();
+        try (Cursor cursor = getReadableDatabase().rawQuery("SELECT MAX(" + KEY_TIMESTAMP + ") FROM " + TABLE_SAMPLES
+                        + " WHERE " + KEY_METRIC + " = ?",
+                new String[]{Integer.toString(metric)})) {
+            return cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getDouble(0) : Double.NaN;
+        }
+    }
+
+    // Number of readings of one metric in [start, end)
+    public long count(int metric, double start, double end) {
+        writer.flush();
+        try (Cursor cursor = getReadableDatabase().rawQuery("SELECT COUNT(*) FROM " + TABLE_SAMPLES
+                        + " WHERE " + KEY_METRIC + " = ? AND " + KEY_TIMESTAMP + " >= ? AND " + KEY_TIMESTAMP + " < ?",
+                new String[]{Integer.toString(metric), Double.toString(start), Double.toString(end)})) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    // Copies readings from the old per-metric databases into this store, then deletes them
+    public void importLegacyDatabases() {
+        importLegacyDatabase(LEGACY_HEART_RATE_DATABASE,
+                "SELECT " + METRIC_HEART_RATE + ", timestamp, heartRate FROM legacy.HeartRate");
+        // The old blood pressure helper stored System.currentTimeMillis() / 3000.0
+        importLegacyDatabase(LEGACY_BLOOD_PRESSURE_DATABASE,
+                "SELECT " + METRIC_SYSTOLIC_BP + ", timestamp * 3.0, systolicBP FROM legacy.BloodPressure"
+                        + " UNION ALL SELECT " + METRIC_DIASTOLIC_BP + ", timestamp * 3.0, diastolicBP FROM legacy.BloodPressure");
+    }
+
+    private void importLegacyDatabase(String name, String select) {
+        File file = context.getDatabasePath(name);
+        if (!file.exists()) {
+            return;
+        }
+        SQLiteDatabase db = getWritableDatabase();
+        try {
+            db.execSQL("ATTACH DATABASE ? AS legacy", new Object[]{file.getAbsolutePath()});
+            try {
+                db.execSQL("INSERT INTO " + TABLE_SAMPLES + " (" + KEY_METRIC + ", " + KEY_TIMESTAMP + ", " + KEY_VALUE + ") " + select);
+            } finally {
+                db.execSQL("DETACH DATABASE legacy");
+            }
+            context.deleteDatabase(name);
+            synchronized (writer) {
+                // Imported rows bypassed the incremental rollups
+                writer.flush();
+                MetricRollups.rebuild(db, TABLE_ROLLUPS, TABLE_SAMPLES);
+            }
+            Log.i(TAG, "Imported legacy database " + name);
+        } catch (Exception e) {
+            Log.e(TAG, "Error while importing legacy database " + name, e);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.empatica.sample;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Records every raw E4 channel of one session to its own set of segment files.
+ *
+ * Appends go straight into the memory-mapped segment of the channel, so recording can run on
+ * the Empatica callback thread. A channel that fails to write is logged once and disabled
+ * instead of throwing into the callback.
+ */
+public class RawSessionRecorder {
+
+    private static final String TAG = "RawSessionRecorder";
+
+    private final File sessionDirectory;
+    private final RawSignalWriter[] writers = new RawSignalWriter[RawChannel.values().length];
+    private volatile boolean closed = false;
+
+    public RawSessionRecorder(FileHandler fileHandler, File sessionDirectory) {
+        this.sessionDirectory = sessionDirectory;
+        for (RawChannel channel : RawChannel.values()) {
+            writers[channel.ordinal()] = fileHandler.openRawWriter(sessionDirectory, channel);
+        }
+    }
+
+    public void record(RawChannel channel, double timestamp, float value) {
+        RawSignalWriter writer = writers[channel.ordinal()];
+        if (writer == null || closed) {
+            return;
+        }
+        try {
+            writer.append(timestamp, value);
+        } catch (IOException | RuntimeException e) {
+            disable(channel, e);
+        }
+    }
+
+    public void recordAcceleration(double timestamp, int x, int y, int z) {
+        RawSignalWriter writer = writers[RawChannel.ACCELERATION.ordinal()];
+        if (writer == null || closed) {
+            return;
+        }
+        try {
+            writer.append(timestamp, x, y, z);
+        } catch (IOException | RuntimeException e) {
+            disable(RawChannel.ACCELERATION, e);
+        }
+    }
+
+    private void disable(RawChannel channel, Exception e) {
+        Log.e(TAG, "Error recording " + channel + ", channel disabled", e);
+        writers[channel.ordinal()] = null;
+    }
+
+    public File getSessionDirectory() {
+        return sessionDirectory;
+    }
+
+    // Total bytes written across all channels
+    public long getBytesWritten() {
+        long bytes = 0;
+        for (RawSignalWriter writer : writers) {
+            if (writer != null) {
+                bytes += writer.getBytesWritten();
+            }
+        }
+        return bytes;
+    }
+
+    public void close() {
+        closed = true;
+        for (int i = 0; i < writers.length; i++) {
+            if (writers[i] != null) {
+                try {
+                    writers[i].close();
+                } catch (IOException e) {
+                    Log.e(TAG, "Error closing " + writers[i].getChannel() + " recording", e);
+                }
+                writers[i] = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.empatica.sample;
+
+import android.database.Cursor;
+
+import java.io.Closeable;
+
+/**
+ * Forward-only iterator over the buckets returned by
+ * {@link MetricsStore#queryRollups(int, double, double, int)}.
+ *
+ * Like {@link MetricCursor}, values are read from the underlying {@link Cursor} window without
+ * allocating per bucket. Close it when done.
+ */
+public class RollupCursor implements Closeable {
+
+    private final Cursor cursor;
+    private final int resolution;
+
+    RollupCursor(Cursor cursor, int resolution) {
+        this.cursor = cursor;
+        this.resolution = resolution;
+    }
+
+    // Advances to the next bucket; returns false once all buckets have been read
+    public boolean moveToNext() {
+        return cursor.moveToNext();
+    }
+
+    // Width of every bucket in this result, in seconds
+    public int getResolution() {
+        return resolution;
+    }
+
+    // Timestamp at which the current bucket starts
+    public double getBucketStart() {
+        return cursor.getDouble(0);
+    }
+
+    public long getCount() {
+        return cursor.getLong(1);
+    }
+
+    public double getMean() {
+        return cursor.getDouble(2) / cursor.getLong(1);
+    }
+
+    public double getMin() {
+        return cursor.getDouble(3);
+    }
+
+    public double getMax() {
+        return cursor.getDouble(4);
+    }
+
+    @Override
+    public void close() {
+        cursor.close();
+    }
+}
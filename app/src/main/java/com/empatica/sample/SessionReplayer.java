@@ -0,0 +1,206 @@
+package com.empatica.sample;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.empatica.empalink.delegate.EmpaDataDelegate;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays a session recorded by {@link RawSessionRecorder} back into an {@link EmpaDataDelegate}.
+ *
+ * All channels are streamed from their segment files and merged by timestamp, so the delegate
+ * sees the same callbacks, with the original timestamps, as during the recording. Playback runs
+ * on its own thread, either paced at a multiple of real time or at {@link #MAX_SPEED}, and can
+ * {@link #seek(double)} to any point of the recording while playing. Replayed samples are not
+ * recorded again, because recording only starts when a device connects.
+ */
+public class SessionReplayer implements Runnable {
+
+    private static final String TAG = "SessionReplayer";
+
+    // Speed value that delivers samples as fast as the delegate consumes them
+    public static final double MAX_SPEED = 0.0;
+
+    // Playback sleeps only when it is at least this far ahead of the requested pace
+    private static final long MIN_SLEEP_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    public interface Listener {
+        // Called on the replay thread once every sample has been delivered or playback was stopped
+        void onReplayFinished(long deliveredSamples);
+    }
+
+    private final RawSignalReader[] readers;
+    private final boolean[] hasRecord;
+    private final EmpaDataDelegate delegate;
+    private final Listener listener;
+    private final Thread thread;
+    private volatile boolean running = false;
+    private volatile double speed;
+    private volatile double seekTarget = Double.NaN;
+    private long deliveredSamples = 0;
+
+    // Pacing reference: the recording time played at the wall-clock instant
+    private double referenceTimestamp = Double.NaN;
+    private long referenceNanos;
+    private double referenceSpeed;
+
+    public SessionReplayer(FileHandler fileHandler, File sessionDirectory, EmpaDataDelegate delegate,
+                           double speed, Listener listener) {
+        RawChannel[] channels = RawChannel.values();
+        this.readers = new RawSignalReader[channels.length];
+        this.hasRecord = new boolean[channels.length];
+        for (int i = 0; i < channels.length; i++) {
+            readers[i] = fileHandler.openRawReader(sessionDirectory, channels[i]);
+        }
+        this.delegate = delegate;
+        this.speed = speed;
+        this.listener = listener;
+        this.thread = new Thread(this, TAG);
+    }
+
+    public void start() {
+        running = true;
+        thread.start();
+    }
+
+    // Stops playback and waits for the replay thread to finish
+    public void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Changes the playback speed: 1.0 is real time, MAX_SPEED disables pacing
+    public void setSpeed(double speed) {
+        this.speed = speed;
+        LockSupport.unpark(thread);
+    }
+
+    // Continues playback from the first sample at or after the timestamp
+    public void seek(double timestamp) {
+        seekTarget = timestamp;
+        LockSupport.unpark(thread);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void run() {
+        try {
+            for (int i = 0; i < readers.length; i++) {
+                hasRecord[i] = readers[i].next();
+            }
+            while (running) {
+                if (!Double.isNaN(seekTarget)) {
+                    applySeek();
+                }
+                int channel = earliestChannel();
+                if (channel < 0) {
+                    break;
+                }
+                RawSignalReader reader = readers[channel];
+                if (!waitUntilDue(reader.getTimestamp())) {
+                    // Interrupted by stop, seek or a speed change
+                    continue;
+                }
+                deliver(reader);
+                deliveredSamples++;
+                hasRecord[channel] = reader.next();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error while replaying session", e);
+        } finally {
+            running = false;
+            closeReaders();
+            if (listener != null) {
+                listener.onReplayFinished(deliveredSamples);
+            }
+        }
+    }
+
+    private void applySeek() throws IOException {
+        double target = seekTarget;
+        seekTarget = Double.NaN;
+        for (int i = 0; i < readers.length; i++) {
+            hasRecord[i] = readers[i].seek(target) && readers[i].next();
+        }
+        referenceTimestamp = Double.NaN;
+    }
+
+    // Index of the channel whose pending record is oldest, or -1 when all channels are done
+    private int earliestChannel() {
+        int earliest = -1;
+        for (int i = 0; i < readers.length; i++) {
+            if (hasRecord[i] && (earliest < 0 || readers[i].getTimestamp() < readers[earliest].getTimestamp())) {
+                earliest = i;
+            }
+        }
+        return earliest;
+    }
+
+    // Sleeps until the sample is due at the current speed; returns false if woken up early
+    private boolean waitUntilDue(double timestamp) {
+        double currentSpeed = speed;
+        if (currentSpeed <= MAX_SPEED) {
+            referenceTimestamp = Double.NaN;
+            return true;
+        }
+        long now = SystemClock.elapsedRealtimeNanos();
+        if (Double.isNaN(referenceTimestamp) || referenceSpeed != currentSpeed) {
+            referenceTimestamp = timestamp;
+            referenceNanos = now;
+            referenceSpeed = currentSpeed;
+            return true;
+        }
+        long dueNanos = referenceNanos + (long) ((timestamp - referenceTimestamp) / currentSpeed * 1e9);
+        long aheadNanos = dueNanos - now;
+        if (aheadNanos < MIN_SLEEP_NANOS) {
+            return true;
+        }
+        LockSupport.parkNanos(this, aheadNanos);
+        return SystemClock.elapsedRealtimeNanos() >= dueNanos;
+    }
+
+    private void deliver(RawSignalReader reader) {
+        double timestamp = reader.getTimestamp();
+        switch (reader.getChannel()) {
+            case BVP:
+                delegate.didReceiveBVP(reader.getValue(0), timestamp);
+                break;
+            case ACCELERATION:
+                delegate.didReceiveAcceleration((int) reader.getValue(0), (int) reader.getValue(1),
+                        (int) reader.getValue(2), timestamp);
+                break;
+            case EDA:
+                delegate.didReceiveGSR(reader.getValue(0), timestamp);
+                break;
+            case TEMPERATURE:
+                delegate.didReceiveTemperature(reader.getValue(0), timestamp);
+                break;
+            case IBI:
+                delegate.didReceiveIBI(reader.getValue(0), timestamp);
+                break;
+        }
+    }
+
+    private void closeReaders() {
+        for (RawSignalReader reader : readers) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Error while closing " + reader.getChannel() + " reader", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.empatica.sample;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces label updates from any thread into at most one main-thread pass per display frame.
+ *
+ * Each {@link Label} keeps only the latest value it was given, a dirty flag and its own update
+ * count; setting a value never allocates, locks, posts a message of its own or touches state
+ * shared with other labels. The first update after a flush schedules
+ * a {@link Choreographer} frame callback, and that frame renders every dirty label once, so a
+ * 64 Hz BVP stream costs the main thread one {@code setText} per frame instead of 64 messages a
+ * second. With a minimum interval, frames closer than that to the previous flush are skipped and
+ * the labels wait for a later one. Numeric labels are formatted on the main thread, once per
+ * flush rather than once per sample.
+ *
+ * Create labels and call {@link #stop()} on the main thread; update labels from any thread.
+ * Latencies go to the {@link PerformanceMetrics} histograms {@code ui.dispatch} (first pending
+ * update until its flush), {@code ui.flush} (the flush itself) and {@code ui.sample_to_label}
+ * (arrival of the sample a label reflects until the label shows it); the {@code ui.updates} and
+ * {@code ui.renders} counters, both advanced by the flush, show how much was coalesced.
+ */
+public class UiDispatcher implements Choreographer.FrameCallback {
+
+    // Minimum interval that flushes on every frame
+    public static final long EVERY_FRAME = 0;
+
+    private static final LatencyHistogram DISPATCH = PerformanceMetrics.histogram("ui.dispatch");
+    private static final LatencyHistogram FLUSH = PerformanceMetrics.histogram("ui.flush");
+    private static final LatencyHistogram SAMPLE_TO_LABEL = PerformanceMetrics.histogram("ui.sample_to_label");
+    private static final AtomicLong UPDATES = PerformanceMetrics.counter("ui.updates");
+    private static final AtomicLong RENDERS = PerformanceMetrics.counter("ui.renders");
+
+    /**
+     * The latest value of one TextView. Either a number, formatted at flush with the label's
+     * format, or a fixed text; whichever was set last is shown.
+     */
+    public final class Label {
+        private final TextView view;
+        private final String format;
+        private volatile double value;
+        private volatile String text;
+        private volatile long sampleArrivalNanos;
+        // Values set so far, by ordered stores: a label has one writer at a time, and an update racing
+        // a device switch may go uncounted
+        private final AtomicLong updates = new AtomicLong();
+        // Main thread only: updates already added to ui.updates
+        private long countedUpdates;
+        // Set after the value by writers, cleared before reading it by the flush
+        private volatile boolean dirty;
+
+        private Label(TextView view, String format) {
+            this.view = view;
+            this.format = format;
+        }
+
+        public TextView getView() {
+            return view;
+        }
+
+        public void set(double value) {
+            set(value, 0);
+        }
+
+        /**
+         * Sets a number and the System.nanoTime() at which the sample it was computed from
+         * arrived, to measure the latency until it is shown; 0 if there is no such sample.
+         */
+        public void set(double value, long sampleArrivalNanos) {
+            this.text = null;
+            this.value = value;
+            this.sampleArrivalNanos = sampleArrivalNanos;
+            updates.lazySet(updates.get() + 1);
+            dirty = true;
+            requestFlush();
+        }
+
+        public void setText(String text) {
+            this.text = text;
+            this.sampleArrivalNanos = 0;
+            updates.lazySet(updates.get() + 1);
+            dirty = true;
+            requestFlush();
+        }
+
+        // Main thread only
+        private void render(long now) {
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            long updateCount = updates.get();
+            UPDATES.addAndGet(updateCount - countedUpdates);
+            countedUpdates = updateCount;
+            String shownText = text;
+            view.setText(shownText != null ? shownText : String.format(Locale.US, format, value));
+            RENDERS.incrementAndGet();
+            long arrival = sampleArrivalNanos;
+            if (arrival != 0) {
+                SAMPLE_TO_LABEL.record(now - arrival);
+            }
+        }
+    }
+
+    private final long minIntervalNanos;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Label> labels = new ArrayList<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Runnable scheduleFrame = this::scheduleFrame;
+    private volatile boolean stopped = false;
+    // Time of the update that scheduled the pending flush
+    private volatile long requestedNanos;
+    // Main thread only
+    private long lastFlushNanos;
+
+    /**
+     * @param minIntervalMillis shortest time between two flushes, or {@link #EVERY_FRAME} to flush
+     *                          on the next frame after any update
+     */
+    public UiDispatcher(long minIntervalMillis) {
+        this.minIntervalNanos = minIntervalMillis * 1_000_000L;
+    }
+
+    // A label showing numbers with a String.format pattern, e.g. "%.2f BPM"; main thread only
+    public Label numberLabel(TextView view, String format) {
+        Label label = new Label(view, format);
+        labels.add(label);
+        return label;
+    }
+
+    // A label showing fixed texts; main thread only
+    public Label textLabel(TextView view) {
+        return numberLabel(view, "%s");
+    }
+
+    // Drops pending updates and ignores later ones; main thread only
+    public void stop() {
+        stopped = true;
+        mainHandler.removeCallbacks(scheduleFrame);
+        Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    private void requestFlush() {
+        // Only the first update after a flush pays for the wake-up
+        if (!scheduled.get() && scheduled.compareAndSet(false, true)) {
+            requestedNanos = System.nanoTime();
+            if (!stopped) {
+                mainHandler.post(scheduleFrame);
+            }
+        }
+    }
+
+    // Choreographer instances belong to a looper thread, so the callback is registered from the main thread
+    private void scheduleFrame() {
+        if (!stopped) {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (stopped) {
+            return;
+        }
+        long remaining = lastFlushNanos + minIntervalNanos - frameTimeNanos;
+        if (lastFlushNanos != 0 && remaining > 0) {
+            Choreographer.getInstance().postFrameCallbackDelayed(this, remaining / 1_000_000L);
+            return;
+        }
+        lastFlushNanos = frameTimeNanos;
+        long requested = requestedNanos;
+        // Cleared before rendering, so updates arriving during the flush schedule the next one
+        scheduled.set(false);
+        long start = System.nanoTime();
+        DISPATCH.record(start - requested);
+        for (int i = 0; i < labels.size(); i++) {
+            labels.get(i).render(start);
+        }
+        FLUSH.recordSince(start);
+    }
+}
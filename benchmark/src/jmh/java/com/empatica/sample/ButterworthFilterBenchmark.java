@@ -0,0 +1,60 @@
+package com.empatica.sample;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Band-pass filter cost, streamed one sample at a time and over a whole window at once.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ButterworthFilterBenchmark {
+
+    @Param({BvpFixtures.SYNTHETIC})
+    public String source;
+
+    @Param({"2", "4"})
+    public int order;
+
+    private ButterworthFilter filter;
+    private float[] signal;
+    private double[] window;
+    private double[] output;
+    private int index = 0;
+
+    @Setup
+    public void setUp() throws IOException {
+        signal = BvpFixtures.load(source);
+        filter = new ButterworthFilter(0.1, 4.4, BvpPipeline.SAMPLING_RATE, order);
+        window = new double[BvpPipeline.MAX_WINDOW_SIZE];
+        output = new double[BvpPipeline.MAX_WINDOW_SIZE];
+        for (int i = 0; i < window.length; i++) {
+            window[i] = signal[i];
+        }
+    }
+
+    @Benchmark
+    public double filterSample() {
+        double filtered = filter.filterSample(signal[index]);
+        if (++index == signal.length) {
+            index = 0;
+        }
+        return filtered;
+    }
+
+    @Benchmark
+    public double[] filterWindow() {
+        filter.filter(window, output, window.length);
+        return output;
+    }
+}
@@ -0,0 +1,98 @@
+package com.empatica.sample;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * BVP input shared by the benchmarks: either a synthetic wrist pulse or the BVP channel of a
+ * session recorded by the app.
+ */
+final class BvpFixtures {
+
+    // Benchmark parameter values for the signal source
+    static final String SYNTHETIC = "synthetic";
+    static final String RECORDED = "recorded";
+
+    // Session directory to read when the source is "recorded"
+    static final String SESSION_PROPERTY = "bvp.session";
+
+    // Ten minutes of signal, long enough that no benchmark sees the wrap-around often
+    private static final int SYNTHETIC_SECONDS = 600;
+
+    private BvpFixtures() {
+    }
+
+    static float[] load(String source) throws IOException {
+        if (SYNTHETIC.equals(source)) {
+            return synthetic(SYNTHETIC_SECONDS * (int) BvpPipeline.SAMPLING_RATE, 72.0, 15.0, 42L);
+        }
+        if (RECORDED.equals(source)) {
+            String session = System.getProperty(SESSION_PROPERTY);
+            if (session == null) {
+                throw new IllegalStateException("Set -D" + SESSION_PROPERTY + " to a recorded session directory");
+            }
+            return recorded(new File(session));
+        }
+        throw new IllegalArgumentException("Unknown BVP source " + source);
+    }
+
+    // Creates one of the pipeline's estimators by benchmark parameter name
+    static BvpPipeline.Estimator estimator(String name) {
+        switch (name) {
+            case "heartRate":
+                return new HeartRateCalculator();
+            case "respiratoryRate":
+                return new RespiratoryRateCalculator();
+            case "respiratoryRateSpectral":
+                return new RespiratoryRateCalculator(RespiratoryRateCalculator.Method.SPECTRAL);
+            case "bloodPressure":
+                BloodPressureCalculator calculator = new BloodPressureCalculator();
+                calculator.setUserAge(40);
+                return calculator;
+            default:
+                throw new IllegalArgumentException("Unknown estimator " + name);
+        }
+    }
+
+    // Pulse at the given rate, amplitude- and baseline-modulated by breathing, with sensor noise
+    static float[] synthetic(int samples, double heartRateBpm, double breathsPerMinute, long seed) {
+        Random random = new Random(seed);
+        double fs = BvpPipeline.SAMPLING_RATE;
+        double pulseHz = heartRateBpm / 60.0;
+        double breathHz = breathsPerMinute / 60.0;
+        float[] bvp = new float[samples];
+        for (int i = 0; i < samples; i++) {
+            double t = i / fs;
+            double breath = Math.sin(2 * Math.PI * breathHz * t);
+            double pulsePhase = 2 * Math.PI * pulseHz * t;
+            double pulse = Math.sin(pulsePhase) + 0.35 * Math.sin(2 * pulsePhase - 0.8);
+            bvp[i] = (float) (60.0 * (1.0 + 0.2 * breath) * pulse + 15.0 * breath + 2.0 * random.nextGaussian());
+        }
+        return bvp;
+    }
+
+    static float[] recorded(File sessionDirectory) throws IOException {
+        RawSignalReader reader = RawSignalReader.open(sessionDirectory, RawChannel.BVP);
+        float[] bvp = new float[1 << 16];
+        int count = 0;
+        try {
+            while (reader.next()) {
+                if (count == bvp.length) {
+                    float[] grown = new float[bvp.length * 2];
+                    System.arraycopy(bvp, 0, grown, 0, count);
+                    bvp = grown;
+                }
+                bvp[count++] = reader.getValue(0);
+            }
+        } finally {
+            reader.close();
+        }
+        if (count < BvpPipeline.MAX_WINDOW_SIZE) {
+            throw new IOException("Session " + sessionDirectory + " holds only " + count + " BVP samples");
+        }
+        float[] trimmed = new float[count];
+        System.arraycopy(bvp, 0, trimmed, 0, count);
+        return trimmed;
+    }
+}
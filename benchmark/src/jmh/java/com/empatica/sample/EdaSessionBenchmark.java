@@ -0,0 +1,63 @@
+package com.empatica.sample;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to run the EDA engine over a whole 24 hour session at 4 Hz (345,600 samples), as a batch
+ * tool reprocessing a recording would. Returns the SCR count so the work cannot be eliminated.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EdaSessionBenchmark {
+
+    private static final int SESSION_SECONDS = 24 * 60 * 60;
+
+    private float[] conductance;
+
+    @Setup
+    public void setUp() {
+        conductance = synthetic(SESSION_SECONDS * (int) EdaEngine.SAMPLING_RATE, 42L);
+    }
+
+    @Benchmark
+    public long processSession() {
+        EdaEngine engine = new EdaEngine(60.0, null);
+        double step = 1.0 / EdaEngine.SAMPLING_RATE;
+        for (int i = 0; i < conductance.length; i++) {
+            engine.add(conductance[i], i * step);
+        }
+        return engine.getTotalScrs();
+    }
+
+    // Slowly drifting tonic level with a Bateman-shaped response every 15 to 45 s, plus sensor noise
+    static float[] synthetic(int samples, long seed) {
+        Random random = new Random(seed);
+        double fs = EdaEngine.SAMPLING_RATE;
+        double[] phasic = new double[samples];
+        int responseLength = (int) (30 * fs);
+        for (double onset = 10.0; onset * fs < samples; onset += 15.0 + 30.0 * random.nextDouble()) {
+            double amplitude = 0.05 + 0.4 * random.nextDouble();
+            int first = (int) (onset * fs);
+            for (int i = first; i < Math.min(samples, first + responseLength); i++) {
+                double t = i / fs - onset;
+                phasic[i] += amplitude * 1.6 * (Math.exp(-t / 2.0) - Math.exp(-t / 0.75));
+            }
+        }
+        float[] eda = new float[samples];
+        for (int i = 0; i < samples; i++) {
+            double t = i / fs;
+            eda[i] = (float) (5.0 + 0.5 * Math.sin(2 * Math.PI * t / 3600.0) + phasic[i] + 0.002 * random.nextGaussian());
+        }
+        return eda;
+    }
+}
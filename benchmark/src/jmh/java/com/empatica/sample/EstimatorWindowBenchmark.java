@@ -0,0 +1,74 @@
+package com.empatica.sample;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of one estimator calculation on a complete window, i.e. the work done on the
+ * processing thread every hop. The window is taken from the pipeline after a few minutes of
+ * signal, so filters and baselines have settled.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EstimatorWindowBenchmark {
+
+    // Signal fed to the pipeline before the window is captured
+    private static final int SETTLE_SAMPLES = 3 * 60 * 64;
+
+    @Param({BvpFixtures.SYNTHETIC})
+    public String source;
+
+    @Param({"heartRate", "respiratoryRate", "respiratoryRateSpectral", "bloodPressure"})
+    public String estimator;
+
+    private BvpPipeline.Estimator calculator;
+    private BvpWindow window;
+
+    @Setup
+    public void setUp() throws IOException {
+        float[] signal = BvpFixtures.load(source);
+        calculator = BvpFixtures.estimator(estimator);
+
+        // Capture the last window the estimator would have seen
+        BvpPipeline pipeline = new BvpPipeline();
+        pipeline.subscribe(new BvpPipeline.Estimator() {
+            @Override
+            public int getWindowSize() {
+                return calculator.getWindowSize();
+            }
+
+            @Override
+            public int getWindowHop() {
+                return calculator.getWindowHop();
+            }
+
+            @Override
+            public void onWindow(BvpWindow captured) {
+                window = captured;
+            }
+        });
+        int samples = Math.min(SETTLE_SAMPLES, signal.length);
+        for (int i = 0; i < samples; i++) {
+            pipeline.ingest(signal[i], i / BvpPipeline.SAMPLING_RATE);
+        }
+        if (window == null) {
+            throw new IllegalStateException("Signal too short for a " + estimator + " window");
+        }
+    }
+
+    @Benchmark
+    public BvpWindow onWindow() {
+        calculator.onWindow(window);
+        return window;
+    }
+}
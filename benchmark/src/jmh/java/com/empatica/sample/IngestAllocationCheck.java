@@ -0,0 +1,70 @@
+package com.empatica.sample;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures that ingesting BVP samples allocates nothing once the pipeline is warm: the per-sample
+ * path (detrending, filtering, ring buffers, peak detection, the continuous estimator) and the
+ * heart rate windows, whose scratch arrays are all allocated at subscription. The bytes the
+ * calling thread allocated over ten minutes of signal are read before and after from HotSpot's
+ * {@link com.sun.management.ThreadMXBean}; any byte fails the check.
+ *
+ * Run with {@code ./gradlew :benchmark:checkIngestAllocations}; {@code check} depends on it.
+ * PipelineIngestBenchmark reports the same as {@code gc.alloc.rate.norm}, but only as a number.
+ */
+public final class IngestAllocationCheck {
+
+    private static final int SAMPLES = 600 * (int) BvpPipeline.SAMPLING_RATE;
+    // Passes run before measuring, so JIT compilation and class loading are done
+    private static final int WARMUP_PASSES = 5;
+    // Measured passes; a pass with a deoptimization may allocate, so the best one counts
+    private static final int MEASURED_PASSES = 3;
+
+    private IngestAllocationCheck() {
+    }
+
+    public static void main(String[] args) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            throw new IllegalStateException("This JVM cannot measure allocated bytes per thread");
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        float[] signal = BvpFixtures.synthetic(SAMPLES, 72.0, 15.0, 42L);
+        boolean failed = false;
+        for (String estimators : new String[]{"none", "continuous", "heartRate"}) {
+            BvpPipeline pipeline = new BvpPipeline();
+            if ("continuous".equals(estimators)) {
+                pipeline.subscribe(new ContinuousRateEstimator());
+            } else if (!"none".equals(estimators)) {
+                pipeline.subscribe(BvpFixtures.estimator(estimators));
+            }
+            long threadId = Thread.currentThread().getId();
+            double timestamp = 0.0;
+            for (int pass = 0; pass < WARMUP_PASSES; pass++) {
+                timestamp = ingest(pipeline, signal, timestamp);
+            }
+            long fewestBytes = Long.MAX_VALUE;
+            for (int pass = 0; pass < MEASURED_PASSES; pass++) {
+                long before = threads.getThreadAllocatedBytes(threadId);
+                timestamp = ingest(pipeline, signal, timestamp);
+                fewestBytes = Math.min(fewestBytes, threads.getThreadAllocatedBytes(threadId) - before);
+            }
+            System.out.printf("%-12s %d bytes over %d samples%n", estimators, fewestBytes, SAMPLES);
+            failed |= fewestBytes > 0;
+        }
+        if (failed) {
+            System.err.println("BVP ingest allocates in steady state");
+            System.exit(1);
+        }
+    }
+
+    private static double ingest(BvpPipeline pipeline, float[] signal, double timestamp) {
+        for (float sample : signal) {
+            pipeline.ingest(sample, timestamp);
+            timestamp += 1.0 / BvpPipeline.SAMPLING_RATE;
+        }
+        return timestamp;
+    }
+}
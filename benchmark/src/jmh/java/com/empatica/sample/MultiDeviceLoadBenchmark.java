@@ -0,0 +1,207 @@
+package com.empatica.sample;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of the whole processing path: {@code devices} simulated wristbands, each streaming a
+ * minute of all channels at {@code speed} times real time into its own {@link DeviceSession},
+ * optionally recording every raw channel to disk as well. The time per operation stays near
+ * 60 s / speed while the sessions keep up; the {@code droppedSamples} counter, BVP samples the
+ * workers fell a full queue behind on, shows the load at which they stop keeping up.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MultiDeviceLoadBenchmark {
+
+    private static final double SIMULATED_SECONDS = 60.0;
+    private static final int RAW_SEGMENT_BYTES = 1 << 20;
+
+    @Param({"1", "8", "32"})
+    public int devices;
+
+    @Param({"10", "100"})
+    public double speed;
+
+    @Param({"false", "true"})
+    public boolean record;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class LoadCounters {
+        public long deliveredSamples;
+        public long droppedSamples;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            deliveredSamples = 0;
+            droppedSamples = 0;
+        }
+    }
+
+    private static final DeviceSession.Listener DISCARD = new DeviceSession.Listener() {
+        @Override
+        public void onBvpProcessed(DeviceSession session, double timestamp) {
+        }
+
+        @Override
+        public void onBeat(DeviceSession session, double timestamp) {
+        }
+
+        @Override
+        public void onAccelerometerEpoch(DeviceSession session, AccelerometerEpoch epoch) {
+        }
+
+        @Override
+        public void onScr(DeviceSession session, double onsetTimestamp, double amplitude, double riseTime) {
+        }
+
+        @Override
+        public void onEdaSummary(DeviceSession session, double startTimestamp, double scrPerMinute,
+                                 double tonicLevel, double meanAmplitude) {
+        }
+
+        @Override
+        public void onTemperatureChange(DeviceSession session, double timestamp, double delta) {
+        }
+
+        @Override
+        public void onTemperatureSummary(DeviceSession session, double startTimestamp, double mean, double min,
+                                         double max, int rejected) {
+        }
+    };
+
+    @Benchmark
+    public long streamDevices(LoadCounters counters) throws IOException {
+        DeviceSessionManager sessions = new DeviceSessionManager(DISCARD);
+        DeviceSimulator[] simulators = new DeviceSimulator[devices];
+        RecordingSink[] recorders = new RecordingSink[devices];
+        double start = System.currentTimeMillis() / 1000.0;
+        for (int i = 0; i < devices; i++) {
+            String deviceName = "SIM-" + i;
+            DeviceSampleSink sink = sessions.open(deviceName);
+            if (record) {
+                recorders[i] = new RecordingSink(Files.createTempDirectory("load-" + i).toFile(), sink);
+                sink = recorders[i];
+            }
+            SimulatedDeviceProfile profile = new SimulatedDeviceProfile()
+                    .setSeed(i)
+                    .setHeartRate(60.0 + 5.0 * (i % 8))
+                    .setMotionArtifacts(0.5, 5.0)
+                    .setDropouts(0.1, 2.0);
+            simulators[i] = new DeviceSimulator(deviceName, profile, sink, start, SIMULATED_SECONDS, speed);
+        }
+        for (DeviceSimulator simulator : simulators) {
+            simulator.start();
+        }
+        for (DeviceSimulator simulator : simulators) {
+            simulator.join();
+            counters.deliveredSamples += simulator.getDeliveredSamples();
+        }
+        for (DeviceSession session : sessions.getSessions()) {
+            counters.droppedSamples += session.getWorker().getDroppedSamples();
+        }
+        // Includes the time the workers need to drain their queues
+        sessions.closeAll();
+        sessions.awaitStopped();
+        for (RecordingSink recorder : recorders) {
+            if (recorder != null) {
+                recorder.close();
+            }
+        }
+        return counters.deliveredSamples;
+    }
+
+    // Writes every raw channel to segment files before handing the sample to the session
+    private static class RecordingSink implements DeviceSampleSink {
+
+        private final File directory;
+        private final DeviceSampleSink session;
+        private final RawSignalWriter[] writers = new RawSignalWriter[RawChannel.values().length];
+
+        RecordingSink(File directory, DeviceSampleSink session) {
+            this.directory = directory;
+            this.session = session;
+            for (RawChannel channel : RawChannel.values()) {
+                writers[channel.ordinal()] = new RawSignalWriter(directory, channel, RAW_SEGMENT_BYTES);
+            }
+        }
+
+        private void write(RawChannel channel, double timestamp, float value) {
+            try {
+                writers[channel.ordinal()].append(timestamp, value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void onBvp(float bvp, double timestamp) {
+            write(RawChannel.BVP, timestamp, bvp);
+            session.onBvp(bvp, timestamp);
+        }
+
+        @Override
+        public void onAcceleration(int x, int y, int z, double timestamp) {
+            try {
+                writers[RawChannel.ACCELERATION.ordinal()].append(timestamp, x, y, z);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            session.onAcceleration(x, y, z, timestamp);
+        }
+
+        @Override
+        public void onEda(float conductance, double timestamp) {
+            write(RawChannel.EDA, timestamp, conductance);
+            session.onEda(conductance, timestamp);
+        }
+
+        @Override
+        public void onTemperature(float temperature, double timestamp) {
+            write(RawChannel.TEMPERATURE, timestamp, temperature);
+            session.onTemperature(temperature, timestamp);
+        }
+
+        @Override
+        public void onIbi(float ibi, double timestamp) {
+            write(RawChannel.IBI, timestamp, ibi);
+            session.onIbi(ibi, timestamp);
+        }
+
+        @Override
+        public void onBattery(float level, double timestamp) {
+            session.onBattery(level, timestamp);
+        }
+
+        @Override
+        public void onWristStatus(boolean onWrist) {
+            session.onWristStatus(onWrist);
+        }
+
+        void close() throws IOException {
+            for (RawSignalWriter writer : writers) {
+                writer.close();
+            }
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+}
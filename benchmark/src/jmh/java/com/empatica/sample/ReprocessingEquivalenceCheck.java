@@ -0,0 +1,65 @@
+package com.empatica.sample;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Checks that {@link BatchReprocessor} produces bit-for-bit the same estimates whether a stream
+ * is cut into chunks or processed in one pass. Two and a quarter hours of synthetic BVP, so the
+ * last chunk is partial, with acceleration that moves for half a minute every five minutes so
+ * the motion level drops some windows, are reprocessed with the default chunks and warm-up on a
+ * parallel pool and compared with a single chunk on a one-thread pool; any difference fails the
+ * check.
+ *
+ * Run with {@code ./gradlew :benchmark:checkReprocessingEquivalence}; {@code check} depends on it.
+ */
+public final class ReprocessingEquivalenceCheck {
+
+    private static final int SAMPLES = 135 * 60 * (int) BvpPipeline.SAMPLING_RATE;
+    private static final int USER_AGE = 40;
+    private static final int ACCELERATION_DIVIDER =
+            (int) (BvpPipeline.SAMPLING_RATE / AccelerometerPipeline.SAMPLING_RATE);
+    // Bursts of wrist motion: 30 s of every 300 s, shaking at 2 Hz by 0.5 g
+    private static final double MOTION_PERIOD = 300.0;
+    private static final double MOTION_DURATION = 30.0;
+
+    private ReprocessingEquivalenceCheck() {
+    }
+
+    public static void main(String[] args) {
+        float[] values = BvpFixtures.synthetic(SAMPLES, 72.0, 15.0, 42L);
+        double[] timestamps = new double[SAMPLES];
+        int accelerationSamples = SAMPLES / ACCELERATION_DIVIDER;
+        float[] acceleration = new float[3 * accelerationSamples];
+        double[] accelerationTimestamps = new double[accelerationSamples];
+        for (int i = 0; i < SAMPLES; i++) {
+            timestamps[i] = i / BvpPipeline.SAMPLING_RATE;
+        }
+        for (int i = 0; i < accelerationSamples; i++) {
+            double t = i / AccelerometerPipeline.SAMPLING_RATE;
+            double shake = t % MOTION_PERIOD < MOTION_DURATION ? 0.5 * Math.sin(2 * Math.PI * 2.0 * t) : 0.0;
+            acceleration[3 * i] = Math.round(shake * AccelerometerPipeline.COUNTS_PER_G);
+            acceleration[3 * i + 2] = (float) AccelerometerPipeline.COUNTS_PER_G;
+            accelerationTimestamps[i] = t;
+        }
+        BvpRecording recording = new BvpRecording(values, timestamps, acceleration, accelerationTimestamps);
+
+        ForkJoinPool singleThread = new ForkJoinPool(1);
+        ReprocessedSession expected;
+        ReprocessedSession chunked;
+        try {
+            expected = new BatchReprocessor(singleThread, SAMPLES, BvpPipeline.MAX_WINDOW_SIZE, USER_AGE)
+                    .process(recording);
+            chunked = new BatchReprocessor(ForkJoinPool.commonPool(), USER_AGE).process(recording);
+        } finally {
+            singleThread.shutdown();
+        }
+
+        System.out.printf("%d heart rate, %d respiratory rate, %d blood pressure estimates over %d samples%n",
+                expected.getHeartRate().size(), expected.getRespiratoryRate().size(),
+                expected.getSystolicBloodPressure().size(), SAMPLES);
+        if (expected.getHeartRate().size() == 0 || !chunked.contentEquals(expected)) {
+            System.err.println("Chunked reprocessing differs from a single pass");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.empatica.sample;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to run the skin temperature engine over a three day session at 4 Hz (1,036,800 samples).
+ * Returns the number of detected shifts so the work cannot be eliminated.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TemperatureSessionBenchmark {
+
+    private static final int SESSION_SECONDS = 3 * 24 * 60 * 60;
+
+    private float[] temperature;
+
+    @Setup
+    public void setUp() {
+        temperature = synthetic(SESSION_SECONDS * (int) TemperatureEngine.SAMPLING_RATE, 42L);
+    }
+
+    @Benchmark
+    public long processSession() {
+        TemperatureEngine engine = new TemperatureEngine(60.0, null);
+        double step = 1.0 / TemperatureEngine.SAMPLING_RATE;
+        for (int i = 0; i < temperature.length; i++) {
+            engine.add(temperature[i], i * step);
+        }
+        return engine.getChangeCount();
+    }
+
+    // Daily rhythm of one degree with a level shift every hour or so, sensor noise and rare spikes
+    static float[] synthetic(int samples, long seed) {
+        Random random = new Random(seed);
+        double fs = TemperatureEngine.SAMPLING_RATE;
+        float[] temperature = new float[samples];
+        double shift = 0.0;
+        for (int i = 0; i < samples; i++) {
+            double t = i / fs;
+            if (random.nextInt(4 * 3600) == 0) {
+                shift = random.nextGaussian();
+            }
+            double value = 33.0 + Math.sin(2 * Math.PI * t / 86400.0) + shift + 0.02 * random.nextGaussian();
+            if (random.nextInt(1000) == 0) {
+                value += 10.0 * random.nextGaussian();
+            }
+            temperature[i] = (float) value;
+        }
+        return temperature;
+    }
+}
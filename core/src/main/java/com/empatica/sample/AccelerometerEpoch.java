@@ -0,0 +1,55 @@
+package com.empatica.sample;
+
+/**
+ * Summary of one epoch of accelerometer data, produced by {@link AccelerometerPipeline}.
+ *
+ * The pipeline reuses one instance for every epoch, so listeners must copy the values they need
+ * inside {@link AccelerometerPipeline.EpochListener#onEpoch(AccelerometerEpoch)}.
+ */
+public class AccelerometerEpoch {
+
+    private double startTimestamp;
+    private int sampleCount;
+    private double enmo;
+    private double activityCount;
+    private int steps;
+    private double movingFraction;
+
+    void set(double startTimestamp, int sampleCount, double enmo, double activityCount, int steps,
+             double movingFraction) {
+        this.startTimestamp = startTimestamp;
+        this.sampleCount = sampleCount;
+        this.enmo = enmo;
+        this.activityCount = activityCount;
+        this.steps = steps;
+        this.movingFraction = movingFraction;
+    }
+
+    // Timestamp of the first sample in the epoch
+    public double getStartTimestamp() {
+        return startTimestamp;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    // Mean Euclidean norm minus one, in g
+    public double getEnmo() {
+        return enmo;
+    }
+
+    // Dynamic acceleration integrated over the epoch, in milli-g seconds
+    public double getActivityCount() {
+        return activityCount;
+    }
+
+    public int getSteps() {
+        return steps;
+    }
+
+    // Share of samples whose dynamic acceleration exceeded the moving threshold, 0 to 1
+    public double getMovingFraction() {
+        return movingFraction;
+    }
+}
@@ -0,0 +1,158 @@
+package com.empatica.sample;
+
+/**
+ * Single-pass processing of the E4 accelerometer stream (32 Hz, three axes).
+ *
+ * Each sample is converted to g and its vector magnitude gives ENMO, the Euclidean norm minus
+ * one g clipped at zero. Gravity is tracked per axis by a slow low-pass and subtracted, and the
+ * magnitude of what is left, the dynamic acceleration, drives the activity counts and the motion
+ * level that the BVP {@link SignalQualityIndex} uses as its artifact reference. Steps are the
+ * bounces of the vector magnitude around its own slow average. Samples are summarised in fixed
+ * epochs, reported through one reused {@link AccelerometerEpoch}; nothing is allocated per
+ * sample. Epoch boundaries depend only on the sample count, like the BVP windows. Not
+ * thread-safe: feed it from one thread.
+ */
+public class AccelerometerPipeline {
+
+    // Empatica E4 accelerometer sampling rate and resolution
+    public static final double SAMPLING_RATE = 32.0;
+    public static final double COUNTS_PER_G = 64.0;
+
+    // Time constant of the gravity estimate, in seconds
+    private static final double GRAVITY_TIME_CONSTANT = 1.0;
+    // Time constant of the reported motion level, in seconds
+    private static final double MOTION_TIME_CONSTANT = 1.0;
+    // Dynamic acceleration above which a sample counts as moving, in g
+    private static final double MOVING_THRESHOLD = 0.05;
+    // A step is a rise of the magnitude above its average by the upper threshold after it fell
+    // back below the lower one, at most every STEP_MIN_INTERVAL seconds (200 steps/min)
+    private static final double STEP_UPPER_THRESHOLD = 0.1;
+    private static final double STEP_LOWER_THRESHOLD = 0.0;
+    private static final double STEP_MIN_INTERVAL = 0.3;
+    // Smoothing of the magnitude before step detection, about 0.1 s
+    private static final double STEP_SMOOTHING_ALPHA = 0.3;
+
+    public interface EpochListener {
+        // Called on the feeding thread; the epoch is reused and must not be kept
+        void onEpoch(AccelerometerEpoch epoch);
+    }
+
+    private final int epochSamples;
+    private final EpochListener listener;
+    private final AccelerometerEpoch epoch = new AccelerometerEpoch();
+    private final double gravityAlpha = 1.0 / (GRAVITY_TIME_CONSTANT * SAMPLING_RATE);
+    private final double motionAlpha = 1.0 / (MOTION_TIME_CONSTANT * SAMPLING_RATE);
+    private final int stepMinSamples = (int) Math.round(STEP_MIN_INTERVAL * SAMPLING_RATE);
+
+    private boolean gravityInitialized = false;
+    private double gravityX;
+    private double gravityY;
+    private double gravityZ;
+    private double gravityMagnitude;
+    private double dynamic = 0.0;
+    private volatile double motion = 0.0;
+    private double stepSignal = 0.0;
+    private boolean stepArmed = true;
+    private long sampleIndex = 0;
+    private long lastStepIndex = Long.MIN_VALUE / 2;
+    private long totalSteps = 0;
+
+    // Running sums of the current epoch
+    private int epochCount = 0;
+    private double epochStart = 0.0;
+    private double enmoSum = 0.0;
+    private double dynamicSum = 0.0;
+    private int movingCount = 0;
+    private int epochSteps = 0;
+
+    public AccelerometerPipeline(double epochSeconds, EpochListener listener) {
+        this.epochSamples = (int) Math.round(epochSeconds * SAMPLING_RATE);
+        if (epochSamples <= 0) {
+            throw new IllegalArgumentException("Epoch too short: " + epochSeconds);
+        }
+        this.listener = listener;
+    }
+
+    // Ingests one sample in raw device counts
+    public void add(int x, int y, int z, double timestamp) {
+        double ax = x / COUNTS_PER_G;
+        double ay = y / COUNTS_PER_G;
+        double az = z / COUNTS_PER_G;
+        double magnitude = Math.sqrt(ax * ax + ay * ay + az * az);
+
+        if (!gravityInitialized) {
+            gravityX = ax;
+            gravityY = ay;
+            gravityZ = az;
+            gravityMagnitude = magnitude;
+            gravityInitialized = true;
+        }
+        gravityX += gravityAlpha * (ax - gravityX);
+        gravityY += gravityAlpha * (ay - gravityY);
+        gravityZ += gravityAlpha * (az - gravityZ);
+        gravityMagnitude += gravityAlpha * (magnitude - gravityMagnitude);
+        double dx = ax - gravityX;
+        double dy = ay - gravityY;
+        double dz = az - gravityZ;
+        dynamic = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        motion += motionAlpha * (dynamic - motion);
+
+        detectStep(magnitude - gravityMagnitude);
+
+        if (epochCount == 0) {
+            epochStart = timestamp;
+        }
+        epochCount++;
+        enmoSum += Math.max(magnitude - 1.0, 0.0);
+        dynamicSum += dynamic;
+        if (dynamic > MOVING_THRESHOLD) {
+            movingCount++;
+        }
+        sampleIndex++;
+
+        if (epochCount == epochSamples) {
+            epoch.set(epochStart, epochCount, enmoSum / epochCount, dynamicSum * 1000.0 / SAMPLING_RATE,
+                    epochSteps, (double) movingCount / epochCount);
+            if (listener != null) {
+                listener.onEpoch(epoch);
+            }
+            epochCount = 0;
+            enmoSum = 0.0;
+            dynamicSum = 0.0;
+            movingCount = 0;
+            epochSteps = 0;
+        }
+    }
+
+    private void detectStep(double bounce) {
+        stepSignal += STEP_SMOOTHING_ALPHA * (bounce - stepSignal);
+        if (stepArmed) {
+            if (stepSignal > STEP_UPPER_THRESHOLD && sampleIndex - lastStepIndex >= stepMinSamples) {
+                lastStepIndex = sampleIndex;
+                epochSteps++;
+                totalSteps++;
+                stepArmed = false;
+            }
+        } else if (stepSignal < STEP_LOWER_THRESHOLD) {
+            stepArmed = true;
+        }
+    }
+
+    // Smoothed dynamic acceleration in g; may be read from any thread
+    public double getMotion() {
+        return motion;
+    }
+
+    // Dynamic acceleration of the latest sample in g
+    public double getDynamicAcceleration() {
+        return dynamic;
+    }
+
+    public long getTotalSteps() {
+        return totalSteps;
+    }
+
+    public long getSampleCount() {
+        return sampleIndex;
+    }
+}
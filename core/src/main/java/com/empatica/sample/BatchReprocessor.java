@@ -0,0 +1,216 @@
+package com.empatica.sample;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Recomputes heart rate, respiratory rate and blood pressure over recorded BVP streams in
+ * parallel on a {@link ForkJoinPool}.
+ *
+ * A stream is cut into chunks of {@code chunkSamples}. Each chunk is processed by its own
+ * {@link BvpPipeline} and estimators, which first ingest up to {@code warmupSamples} of the
+ * preceding signal so the detrending baseline and band-pass filter reach the state the
+ * streaming pipeline has at that point. Only windows ending inside the chunk are kept, and
+ * chunk results are concatenated in stream order, so the output does not depend on
+ * scheduling. The estimators have no state between windows and the pipeline places windows by
+ * stream position, so with the default margin, where the start-up transient has decayed by
+ * about 20 orders of magnitude, the result matches a single streaming pass.
+ *
+ * As in a live {@link DeviceSession}, the recorded acceleration runs through an
+ * {@link AccelerometerPipeline} whose motion level feeds the {@link SignalQualityIndex}. Each
+ * acceleration sample is applied before the first BVP sample at or after its timestamp, so a
+ * window is scored with the motion up to its last sample; live, the motion may be a few queued
+ * samples ahead or behind. The on-wrist status is not recorded, so every window is scored as
+ * worn, and windows recorded off the wrist, which the live path scores 0, are judged by their
+ * signal features alone.
+ */
+public class BatchReprocessor {
+
+    // Thirty minutes of BVP per chunk
+    public static final int DEFAULT_CHUNK_SAMPLES = 64 * 60 * 30;
+    // Eight minutes of warm-up, about 48 time constants of the detrending baseline
+    public static final int DEFAULT_WARMUP_SAMPLES = 64 * 60 * 8;
+    // Accelerometer epochs are not reported; their length does not change the motion level
+    private static final double ACCELEROMETER_EPOCH = 10.0;
+
+    private final ForkJoinPool pool;
+    private final int chunkSamples;
+    private final int warmupSamples;
+    private final int userAge;
+
+    public BatchReprocessor(ForkJoinPool pool, int userAge) {
+        this(pool, DEFAULT_CHUNK_SAMPLES, DEFAULT_WARMUP_SAMPLES, userAge);
+    }
+
+    public BatchReprocessor(ForkJoinPool pool, int chunkSamples, int warmupSamples, int userAge) {
+        if (chunkSamples <= 0 || warmupSamples < BvpPipeline.MAX_WINDOW_SIZE) {
+            throw new IllegalArgumentException("Unsupported chunk " + chunkSamples + " / warm-up " + warmupSamples);
+        }
+        this.pool = pool;
+        this.chunkSamples = chunkSamples;
+        this.warmupSamples = warmupSamples;
+        this.userAge = userAge;
+    }
+
+    // Processes one stream, splitting it across the pool
+    public ReprocessedSession process(BvpRecording recording) {
+        return pool.invoke(newStreamTask(recording));
+    }
+
+    /**
+     * Loads and processes many recorded sessions; sessions and their chunks share the pool.
+     *
+     * @return one result per session directory, in the same order
+     */
+    public List<ReprocessedSession> processSessions(List<File> sessionDirectories) {
+        return pool.invoke(new RecursiveTask<List<ReprocessedSession>>() {
+            @Override
+            protected List<ReprocessedSession> compute() {
+                List<ForkJoinTask<ReprocessedSession>> tasks = new ArrayList<>();
+                for (File directory : sessionDirectories) {
+                    tasks.add(new RecursiveTask<ReprocessedSession>() {
+                        @Override
+                        protected ReprocessedSession compute() {
+                            try {
+                                return newStreamTask(BvpRecording.load(directory)).compute();
+                            } catch (IOException e) {
+                                throw new UncheckedIOException("Cannot read session " + directory, e);
+                            }
+                        }
+                    }.fork());
+                }
+                List<ReprocessedSession> results = new ArrayList<>(tasks.size());
+                for (ForkJoinTask<ReprocessedSession> task : tasks) {
+                    results.add(task.join());
+                }
+                return results;
+            }
+        });
+    }
+
+    private ChunkRangeTask newStreamTask(BvpRecording recording) {
+        int chunks = (recording.size() + chunkSamples - 1) / chunkSamples;
+        return new ChunkRangeTask(recording, 0, chunks);
+    }
+
+    // Processes one chunk: warm up on the preceding samples, keep windows ending in the chunk
+    private ReprocessedSession processChunk(BvpRecording recording, int chunk) {
+        int start = chunk * chunkSamples;
+        int end = Math.min(start + chunkSamples, recording.size());
+        int warmupStart = Math.max(0, start - warmupSamples);
+
+        ReprocessedSession result = new ReprocessedSession();
+        BvpPipeline pipeline = new BvpPipeline(warmupStart);
+
+        HeartRateCalculator heartRate = new HeartRateCalculator();
+        pipeline.subscribe(new ChunkOutput(heartRate, start,
+                window -> result.getHeartRate().add(window.getTimestamp(), heartRate.getHeartRate())));
+
+        RespiratoryRateCalculator respiratoryRate = new RespiratoryRateCalculator();
+        pipeline.subscribe(new ChunkOutput(respiratoryRate, start,
+                window -> result.getRespiratoryRate().add(window.getTimestamp(), respiratoryRate.getRespiratoryRate())));
+
+        BloodPressureCalculator bloodPressure = new BloodPressureCalculator();
+        bloodPressure.setUserAge(userAge);
+        pipeline.subscribe(new ChunkOutput(bloodPressure, start, window -> {
+            result.getSystolicBloodPressure().add(window.getTimestamp(), bloodPressure.getSystolicBloodPressure());
+            result.getDiastolicBloodPressure().add(window.getTimestamp(), bloodPressure.getDiastolicBloodPressure());
+        }));
+
+        // The motion level forgets within seconds, so the warm-up covers it too
+        AccelerometerPipeline accelerometer = new AccelerometerPipeline(ACCELEROMETER_EPOCH, null);
+        SignalQualityIndex quality = pipeline.getQualityIndex();
+        int accelerationCount = recording.getAccelerationCount();
+        int acceleration = warmupStart < end ? recording.findAcceleration(recording.getTimestamp(warmupStart)) : 0;
+        for (int i = warmupStart; i < end; i++) {
+            double timestamp = recording.getTimestamp(i);
+            if (acceleration < accelerationCount && recording.getAccelerationTimestamp(acceleration) <= timestamp) {
+                do {
+                    accelerometer.add((int) recording.getAcceleration(acceleration, 0),
+                            (int) recording.getAcceleration(acceleration, 1),
+                            (int) recording.getAcceleration(acceleration, 2),
+                            recording.getAccelerationTimestamp(acceleration));
+                    acceleration++;
+                } while (acceleration < accelerationCount
+                        && recording.getAccelerationTimestamp(acceleration) <= timestamp);
+                quality.setMotion(accelerometer.getMotion());
+            }
+            pipeline.ingest(recording.getValue(i), timestamp);
+        }
+        return result;
+    }
+
+    // Splits a range of chunks in halves until one chunk is left, then joins results in order
+    private class ChunkRangeTask extends RecursiveTask<ReprocessedSession> {
+        private static final long serialVersionUID = 1L;
+
+        private final BvpRecording recording;
+        private final int fromChunk;
+        private final int toChunk;
+
+        ChunkRangeTask(BvpRecording recording, int fromChunk, int toChunk) {
+            this.recording = recording;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+        }
+
+        @Override
+        protected ReprocessedSession compute() {
+            if (toChunk - fromChunk <= 1) {
+                return fromChunk < toChunk ? processChunk(recording, fromChunk) : new ReprocessedSession();
+            }
+            int middle = (fromChunk + toChunk) >>> 1;
+            ChunkRangeTask right = new ChunkRangeTask(recording, middle, toChunk);
+            right.fork();
+            ReprocessedSession result = new ChunkRangeTask(recording, fromChunk, middle).compute();
+            result.append(right.join());
+            return result;
+        }
+    }
+
+    // Runs an estimator and collects its output for windows ending at or after the chunk start
+    private static class ChunkOutput implements BvpPipeline.Estimator {
+        interface Collector {
+            void collect(BvpWindow window);
+        }
+
+        private final BvpPipeline.Estimator estimator;
+        private final long firstIndex;
+        private final Collector collector;
+
+        ChunkOutput(BvpPipeline.Estimator estimator, long firstIndex, Collector collector) {
+            this.estimator = estimator;
+            this.firstIndex = firstIndex;
+            this.collector = collector;
+        }
+
+        @Override
+        public int getWindowSize() {
+            return estimator.getWindowSize();
+        }
+
+        @Override
+        public int getWindowHop() {
+            return estimator.getWindowHop();
+        }
+
+        @Override
+        public void onWindow(BvpWindow window) {
+            if (window.getEndIndex() < firstIndex) {
+                // Warm-up window, produced by the previous chunk
+                return;
+            }
+            estimator.onWindow(window);
+            // Estimators skip unusable windows, so there is no new estimate to collect
+            if (window.isUsable()) {
+                collector.collect(window);
+            }
+        }
+    }
+}
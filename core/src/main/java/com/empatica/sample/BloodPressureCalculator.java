@@ -0,0 +1,175 @@
+package com.empatica.sample;
+
+public class BloodPressureCalculator implements BvpPipeline.Estimator {
+    private static final int BUFFER_SIZE = 64 * 20;
+    // Recompute after half a window of new samples so consecutive windows overlap by 50%
+    private static final int WINDOW_HOP = BUFFER_SIZE / 2;
+    // Written on the processing worker, read by the UI timer
+    private volatile boolean ready = false;
+
+    private volatile double latestSystolicBP = 0.0;
+    private volatile double latestDiastolicBP = 0.0;
+    private volatile int userAge = 0;
+    private volatile double quality = 0.0; // Signal quality of the window behind the latest BP
+    // Scratch for the point values of one window and the resulting PINs
+    private final double[] systolicPoints = new double[BUFFER_SIZE / 2 + 1];
+    private final double[] diastolicPoints = new double[BUFFER_SIZE / 2 + 1];
+    private final double[] pins = new double[2];
+
+    public BloodPressureCalculator() {
+    }
+
+    public void setUserAge(int age) {
+        this.userAge = age;
+    }
+
+    @Override
+    public int getWindowSize() {
+        return BUFFER_SIZE;
+    }
+
+    @Override
+    public int getWindowHop() {
+        return WINDOW_HOP;
+    }
+
+    // Receives a band-passed BVP (Blood Volume Pulse) window from the pipeline
+    @Override
+    public void onWindow(BvpWindow window) {
+        if (!window.isUsable()) {
+            // Motion or poor contact: keep the previous reading instead of reporting garbage
+            Diagnostics.count("blood_pressure.skipped_windows", 1);
+            return;
+        }
+        calculateBloodPressure(window);
+        quality = window.getQuality();
+        ready = true;
+    }
+
+    private void calculateBloodPressure(BvpWindow window) {
+        try {
+            // Extract Points of Interest (PINs)
+            double[] pins = extractPins(window);
+
+            // Calculate Systolic and Diastolic BP for "All ages"
+            double systolicBP_AllAges = -0.41 * (pins[0] + pins[1]) + 115.61;
+            double diastolicBP_AllAges = 0.75 * (pins[0] + pins[1]) + 74.66;
+
+            // Calculate Systolic and Diastolic BP for "20-40" age range
+            double systolicBP_20_40 = 0.80 * (pins[0] + pins[1]) + 105.79;
+            double diastolicBP_20_40 = 0.17 * (pins[0] + pins[1]) + 76.60;
+
+            if (userAge >= 20 && userAge <= 40) {
+                latestSystolicBP = systolicBP_20_40;
+                latestDiastolicBP = diastolicBP_20_40;
+            } else {
+                latestSystolicBP = systolicBP_AllAges;
+                latestDiastolicBP = diastolicBP_AllAges;
+            }
+
+            Diagnostics.record("blood_pressure.systolic", latestSystolicBP);
+            Diagnostics.record("blood_pressure.diastolic", latestDiastolicBP);
+            Diagnostics.d("BloodPressureCalculator", String.format("Systolic BP = %.2f, Diastolic BP = %.2f", latestSystolicBP, latestDiastolicBP));
+
+        } catch (Exception e) {
+            Diagnostics.count("blood_pressure.errors", 1);
+            Diagnostics.e("BloodPressureCalculator", "Error calculating blood pressure", e);
+            latestSystolicBP = 0.0;
+            latestDiastolicBP = 0.0;
+        }
+    }
+
+  /*  // Method to extract Points of Interest (PINs) from the BVP signal
+    private double extractPins(double[] ppgSignal) {
+        // Lists to store systolic and diastolic points
+        List<Double> systolicPoints = new ArrayList<>();
+        List<Double> diastolicPoints = new ArrayList<>();
+
+        // Iterate over the signal to find systolic and diastolic points
+        for (int i = 1; i < ppgSignal.length - 1; i++) {
+            // Identify systolic points (local maxima)
+            if (ppgSignal[i] > ppgSignal[i - 1] && ppgSignal[i] > ppgSignal[i + 1]) {
+                systolicPoints.add(ppgSignal[i]);
+            }
+            // Identify diastolic points (local minima)
+            if (ppgSignal[i] < ppgSignal[i - 1] && ppgSignal[i] < ppgSignal[i + 1]) {
+                diastolicPoints.add(ppgSignal[i]);
+            }
+        }
+
+        // Ensure equal number of points by truncating the longer list
+        int size = Math.min(systolicPoints.size(), diastolicPoints.size());
+        systolicPoints = systolicPoints.subList(0, size);
+        diastolicPoints = diastolicPoints.subList(0, size);
+
+        // Combine systolicPoints and diastolicPoints into a single list
+        List<Double> combinedPoints = new ArrayList<>(systolicPoints);
+        combinedPoints.addAll(diastolicPoints);
+
+        // Calculate and return the median of the combined list
+        return median(combinedPoints);
+    }
+
+    // Utility method to calculate the median of a list of numbers
+    private double median(List<Double> data) {
+        // Get the size of the list
+        int size = data.size();
+
+        // If the list is empty, return 0.0
+        if (size == 0) return 0.0;
+
+        // Sort the list to arrange the values in ascending order
+        data.sort(Double::compareTo);
+
+        // Calculate the median
+        if (size % 2 == 0) {
+            // If even number of elements, return the average of the two middle elements
+            return (data.get(size / 2 - 1) + data.get(size / 2)) / 2.0;
+        } else {
+            // If odd number of elements, return the middle element
+            return data.get(size / 2);
+        }
+    }
+*/
+
+
+    // Method to extract Points of Interest (PINs) from the BVP signal
+    private double[] extractPins(BvpWindow window) {
+        double[] ppgSignal = window.getFiltered();
+
+        // Systolic points are the peaks found by the pipeline's detector
+        int systolicCount = window.getPeakCount();
+        for (int i = 0; i < systolicCount; i++) {
+            systolicPoints[i] = ppgSignal[window.getPeaks()[i]];
+        }
+        // Diastolic points are its troughs
+        int diastolicCount = window.getTroughCount();
+        for (int i = 0; i < diastolicCount; i++) {
+            diastolicPoints[i] = ppgSignal[window.getTroughs()[i]];
+        }
+
+        // Calculate and return the medians of the systolic and diastolic points
+        pins[0] = SampleStatistics.median(systolicPoints, systolicCount);
+        pins[1] = SampleStatistics.median(diastolicPoints, diastolicCount);
+        return pins;
+    }
+
+    // Method to check if the calculator is ready for the next calculation
+    public boolean isReady() {
+        return ready;
+    }
+
+    public double getSystolicBloodPressure() {
+        ready = false; // Reset the ready flag after reading the blood pressure
+        return latestSystolicBP;
+    }
+
+    public double getDiastolicBloodPressure() {
+        return latestDiastolicBP;
+    }
+
+    // Signal quality of the window behind the latest blood pressure, between 0 and 1
+    public double getQuality() {
+        return quality;
+    }
+}
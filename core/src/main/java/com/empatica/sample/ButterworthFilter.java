@@ -0,0 +1,33 @@
+package com.empatica.sample;
+
+import uk.me.berndporr.iirj.Butterworth;
+
+public class ButterworthFilter {
+
+    // Holds the filter state between calls to filterSample
+    private Butterworth butterworthFilter;
+
+    public ButterworthFilter(double lowCut, double highCut, double fs, int order) {
+        butterworthFilter = new Butterworth();
+        butterworthFilter.bandPass(order, fs, (lowCut + highCut) / 2, (highCut - lowCut) / 2);
+    }
+
+    // Streaming mode: filters one sample, carrying the filter state over to the next call.
+    // Feed each raw sample exactly once, in order, and keep the outputs instead of re-filtering windows.
+    public double filterSample(double sample) {
+        return butterworthFilter.filter(sample);
+    }
+
+    public double[] filter(double[] data) {
+        double[] output = new double[data.length];
+        filter(data, output, data.length);
+        return output;
+    }
+
+    // Filters the first length samples of input into output without allocating; output may be input
+    public void filter(double[] input, double[] output, int length) {
+        for (int i = 0; i < length; i++) {
+            output[i] = filterSample(input[i]);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.empatica.sample;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single-pass BVP processing shared by all vital-sign estimators.
+ *
+ * Each sample is ingested once: it is detrended against a slow moving baseline, run through one
+ * common band-pass filter and appended to the pipeline's ring buffers. Estimators subscribe with
+ * the window size and hop they need; estimators asking for the same window share one
+ * {@link BvpWindow}, which is copied once per hop. Peaks and troughs are found sample by sample
+ * by one {@link StreamingPeakDetector}, and every window reuses its detections. Each window is
+ * scored by one {@link SignalQualityIndex} before the estimators see it.
+ *
+ * Window boundaries are a function of the sample index in the stream: a window of size S and
+ * hop H ends after sample max(S, H) and then every H samples. A pipeline created with
+ * {@link #BvpPipeline(long)} for a later part of a stream therefore produces windows at the
+ * same positions as one that ingested the stream from its start.
+ *
+ * Filling a window and each estimator's calculation are timed into the
+ * {@link PerformanceMetrics} histograms {@code window.fill} and {@code window.<estimator class>}.
+ */
+public class BvpPipeline {
+
+    // Empatica E4 BVP sampling rate
+    public static final double SAMPLING_RATE = 64.0;
+    // Longest window any estimator may ask for (20 seconds)
+    public static final int MAX_WINDOW_SIZE = 64 * 20;
+
+    // Common pass band, wide enough for respiratory modulation (0.1 Hz) and pulse harmonics (4.4 Hz)
+    private static final double LOW_CUT = 0.1;
+    private static final double HIGH_CUT = 4.4;
+    private static final int FILTER_ORDER = 2;
+    // Time constant of the baseline removed before filtering, in seconds
+    private static final double DETREND_TIME_CONSTANT = 10.0;
+    // Shortest beat-to-beat interval the peak detector accepts, 0.33 s or 180 bpm
+    private static final double REFRACTORY_SECONDS = 0.33;
+    // Fraction of the recent peak height a local maximum must reach to count as a beat
+    private static final double PEAK_THRESHOLD = 0.3;
+    // Detections kept for the windows: 20 s at 180 bpm is 60 beats
+    private static final int PEAK_RING_CAPACITY = 128;
+
+    private static final LatencyHistogram WINDOW_FILL = PerformanceMetrics.histogram("window.fill");
+
+    public interface Estimator {
+        // Number of most recent samples the estimator needs per calculation
+        int getWindowSize();
+
+        // Number of new samples between two calculations
+        int getWindowHop();
+
+        void onWindow(BvpWindow window);
+    }
+
+    public interface SampleEstimator {
+        // Called for every sample, right after it has been detrended and band-pass filtered
+        void onSample(double filtered, double timestamp);
+    }
+
+    private final SignalRingBuffer rawBuffer = new SignalRingBuffer(MAX_WINDOW_SIZE);
+    private final SignalRingBuffer filteredBuffer = new SignalRingBuffer(MAX_WINDOW_SIZE);
+    private final ButterworthFilter bandPass = new ButterworthFilter(LOW_CUT, HIGH_CUT, SAMPLING_RATE, FILTER_ORDER);
+    private final double detrendAlpha = 1.0 / (DETREND_TIME_CONSTANT * SAMPLING_RATE);
+    private final List<WindowGroup> groups = new ArrayList<>();
+    private final List<SampleEstimator> sampleEstimators = new ArrayList<>();
+    private final StreamingPeakDetector peakDetector;
+    private final SignalQualityIndex qualityIndex = new SignalQualityIndex();
+    private long sampleIndex;
+    private double baseline = 0.0;
+    private boolean baselineInitialized = false;
+
+    public BvpPipeline() {
+        this(0);
+    }
+
+    // Pipeline whose first ingested sample has the given index in the stream
+    public BvpPipeline(long firstSampleIndex) {
+        this.sampleIndex = firstSampleIndex;
+        this.peakDetector = new StreamingPeakDetector(SAMPLING_RATE, REFRACTORY_SECONDS, PEAK_THRESHOLD,
+                PEAK_RING_CAPACITY, firstSampleIndex);
+    }
+
+    // Registers an estimator; call before streaming starts, as it may allocate a new window
+    public void subscribe(Estimator estimator) {
+        int size = estimator.getWindowSize();
+        int hop = estimator.getWindowHop();
+        if (size <= 2 || size > MAX_WINDOW_SIZE || hop <= 0) {
+            throw new IllegalArgumentException("Unsupported window size " + size + " / hop " + hop);
+        }
+        for (WindowGroup group : groups) {
+            if (group.window.getFiltered().length == size && group.hop == hop) {
+                group.add(estimator);
+                return;
+            }
+        }
+        WindowGroup group = new WindowGroup(new BvpWindow(filteredBuffer, size, SAMPLING_RATE), hop);
+        // Samples until the end of the next window, counted from the start of the stream
+        long firstWindowEnd = Math.max(size, hop);
+        long nextWindowEnd = firstWindowEnd;
+        if (sampleIndex >= firstWindowEnd) {
+            nextWindowEnd += ((sampleIndex - firstWindowEnd) / hop + 1) * hop;
+        }
+        group.samplesUntilWindow = nextWindowEnd - sampleIndex;
+        group.add(estimator);
+        groups.add(group);
+    }
+
+    // Registers an estimator that updates itself sample by sample; call before streaming starts
+    public void subscribe(SampleEstimator estimator) {
+        sampleEstimators.add(estimator);
+    }
+
+    // Detector whose peaks and troughs the windows carry, for estimators that need every event
+    public StreamingPeakDetector getPeakDetector() {
+        return peakDetector;
+    }
+
+    // Quality index scoring every window; feed it accelerometer and on-wrist updates
+    public SignalQualityIndex getQualityIndex() {
+        return qualityIndex;
+    }
+
+    // Ingests one raw BVP sample and notifies estimators whose next window is complete
+    public void ingest(float bvp, double timestamp) {
+        if (!baselineInitialized) {
+            baseline = bvp;
+            baselineInitialized = true;
+        }
+        baseline += detrendAlpha * (bvp - baseline);
+
+        double filtered = bandPass.filterSample(bvp - baseline);
+        rawBuffer.add(bvp);
+        filteredBuffer.add(filtered);
+        peakDetector.add(filtered);
+        sampleIndex++;
+
+        for (int s = 0; s < sampleEstimators.size(); s++) {
+            sampleEstimators.get(s).onSample(filtered, timestamp);
+        }
+
+        for (int g = 0; g < groups.size(); g++) {
+            WindowGroup group = groups.get(g);
+            if (--group.samplesUntilWindow > 0) {
+                continue;
+            }
+            group.samplesUntilWindow = group.hop;
+            // Skipped while a pipeline started mid-stream has not buffered a full window yet
+            if (filteredBuffer.size() >= group.window.getFiltered().length) {
+                long start = System.nanoTime();
+                group.window.fill(rawBuffer, filteredBuffer, timestamp, sampleIndex - 1, peakDetector, qualityIndex);
+                start = WINDOW_FILL.recordSince(start);
+                for (int e = 0; e < group.estimators.size(); e++) {
+                    group.estimators.get(e).onWindow(group.window);
+                    start = group.timers.get(e).recordSince(start);
+                }
+            }
+        }
+    }
+
+    private static class WindowGroup {
+        final BvpWindow window;
+        final int hop;
+        final List<Estimator> estimators = new ArrayList<>();
+        // Calculation time of each estimator, in the same order
+        final List<LatencyHistogram> timers = new ArrayList<>();
+        long samplesUntilWindow;
+
+        WindowGroup(BvpWindow window, int hop) {
+            this.window = window;
+            this.hop = hop;
+        }
+
+        void add(Estimator estimator) {
+            estimators.add(estimator);
+            timers.add(PerformanceMetrics.histogram("window." + estimator.getClass().getSimpleName()));
+        }
+    }
+}
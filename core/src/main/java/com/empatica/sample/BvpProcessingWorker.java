@@ -0,0 +1,179 @@
+package com.empatica.sample;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs BVP window computations and persistence on a dedicated background thread.
+ *
+ * The Empatica callback thread only calls {@link #enqueue(float, double, long)}, which copies the
+ * sample into a lock-free {@link SampleQueue} and wakes the worker if it is parked. The worker
+ * drains the queue into the {@link BvpPipeline}, reports each processed sample to the
+ * {@link Listener} and runs tasks posted through {@link #execute(Runnable)}, such as database
+ * writes. Queue depth and drop counters show when the worker cannot keep up, and the
+ * {@link PerformanceMetrics} histograms {@code bvp.queue_wait}, {@code bvp.ingest},
+ * {@code bvp.listener} and {@code worker.task} show where its time goes. The histograms and the
+ * {@code bvp.dropped} counter, which is the queue's own drop count, are registered under the
+ * prefix given at construction, so every worker updates only its own.
+ */
+public class BvpProcessingWorker implements Runnable, SampleQueue.SampleHandler {
+
+    private static final String TAG = "BvpProcessingWorker";
+    // About a minute of BVP at 64 Hz
+    private static final int QUEUE_CAPACITY = 4096;
+    // Samples processed before checking posted tasks again
+    private static final int DRAIN_BATCH = 256;
+
+    public interface Listener {
+        // Called on the worker thread after each sample went through the pipeline
+        void onBvpProcessed(double timestamp);
+    }
+
+    private final BvpPipeline pipeline;
+    private final Listener listener;
+    private final SampleQueue queue;
+    private final LatencyHistogram queueWait;
+    private final LatencyHistogram ingest;
+    private final LatencyHistogram listenerTime;
+    private final LatencyHistogram taskTime;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private volatile boolean running = false;
+    private volatile boolean sleeping = false;
+    private volatile long processedSamples = 0;
+    // Arrival time of the sample being processed; read by the listener on the worker thread
+    private long currentArrivalNanos;
+
+    // Registers the worker's metrics as metricPrefix followed by their names
+    public BvpProcessingWorker(BvpPipeline pipeline, String metricPrefix, Listener listener) {
+        this.pipeline = pipeline;
+        this.listener = listener;
+        this.queue = new SampleQueue(QUEUE_CAPACITY, PerformanceMetrics.counter(metricPrefix + "bvp.dropped"));
+        this.queueWait = PerformanceMetrics.histogram(metricPrefix + "bvp.queue_wait");
+        this.ingest = PerformanceMetrics.histogram(metricPrefix + "bvp.ingest");
+        this.listenerTime = PerformanceMetrics.histogram(metricPrefix + "bvp.listener");
+        this.taskTime = PerformanceMetrics.histogram(metricPrefix + "worker.task");
+        this.thread = new Thread(this, TAG);
+    }
+
+    public void start() {
+        running = true;
+        thread.start();
+    }
+
+    // Stops the worker after it has processed the queued samples and tasks
+    public void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    // True once the worker has finished after stop()
+    public boolean isFinished() {
+        return !running && !thread.isAlive();
+    }
+
+    // Waits until the worker has finished after stop()
+    public void join() {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Called from the callback thread with the System.nanoTime() at which the sample arrived; never blocks
+    public boolean enqueue(float bvp, double timestamp, long arrivalNanos) {
+        // A full queue counts the drop itself
+        boolean accepted = queue.offer(bvp, timestamp, arrivalNanos);
+        if (sleeping) {
+            LockSupport.unpark(thread);
+        }
+        return accepted;
+    }
+
+    // Runs the task on the worker thread, after the samples queued before it
+    public void execute(Runnable task) {
+        tasks.add(task);
+        if (sleeping) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            int drained = queue.drain(this, DRAIN_BATCH);
+            runTasks();
+            if (drained == 0) {
+                sleeping = true;
+                // Re-check after publishing the flag so a concurrent enqueue cannot be missed
+                if (running && queue.isEmpty() && tasks.isEmpty()) {
+                    LockSupport.park(this);
+                }
+                sleeping = false;
+            }
+        }
+        // Finish what was accepted before stopping
+        while (queue.drain(this, DRAIN_BATCH) > 0) {
+            runTasks();
+        }
+        runTasks();
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            long start = System.nanoTime();
+            try {
+                task.run();
+            } catch (Exception e) {
+                Diagnostics.e(TAG, "Error running processing task", e);
+            }
+            taskTime.recordSince(start);
+        }
+    }
+
+    @Override
+    public void onSample(float value, double timestamp, long arrivalNanos) {
+        currentArrivalNanos = arrivalNanos;
+        long start = System.nanoTime();
+        queueWait.record(start - arrivalNanos);
+        try {
+            pipeline.ingest(value, timestamp);
+            long ingested = ingest.recordSince(start);
+            listener.onBvpProcessed(timestamp);
+            listenerTime.recordSince(ingested);
+        } catch (Exception e) {
+            Diagnostics.e(TAG, "Error processing BVP sample", e);
+        }
+        processedSamples++;
+    }
+
+    // Samples waiting to be processed
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getMaxQueueDepth() {
+        return queue.getMaxDepth();
+    }
+
+    // Samples dropped because the worker fell a full queue behind
+    public long getDroppedSamples() {
+        return queue.getDroppedCount();
+    }
+
+    /**
+     * System.nanoTime() at which the sample now being processed reached the app. Only meaningful
+     * on the worker thread, inside {@link Listener#onBvpProcessed(double)}; used to measure the
+     * latency from a sample's arrival to what it updates.
+     */
+    public long getCurrentArrivalNanos() {
+        return currentArrivalNanos;
+    }
+
+    public long getProcessedSamples() {
+        return processedSamples;
+    }
+}
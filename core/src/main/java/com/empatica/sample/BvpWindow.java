@@ -0,0 +1,119 @@
+package com.empatica.sample;
+
+/**
+ * A window of BVP data produced by {@link BvpPipeline} and shared by every estimator subscribed
+ * with the same window size and hop.
+ *
+ * The arrays are owned by the pipeline and overwritten for the next window, so estimators must
+ * read what they need inside {@link BvpPipeline.Estimator#onWindow(BvpWindow)} and not keep
+ * references to them. Peak and trough indices are positions within the window, in ascending order,
+ * of the events confirmed so far by the pipeline's {@link StreamingPeakDetector}; an event in the
+ * last refractory interval of the window appears in the next window instead. Each window is
+ * scored once by the pipeline's {@link SignalQualityIndex}; estimators skip unusable windows.
+ */
+public class BvpWindow {
+
+    private final double[] raw;
+    private final double[] filtered;
+    private final int[] peaks;
+    private final int[] troughs;
+    private final double samplingRate;
+    private int length = 0;
+    private int peakCount = 0;
+    private int troughCount = 0;
+    private double timestamp = 0.0;
+    private long endIndex = -1;
+    private double quality = 0.0;
+
+    BvpWindow(SignalRingBuffer owner, int size, double samplingRate) {
+        this.raw = owner.newWindow(size);
+        this.filtered = owner.newWindow(size);
+        // A strict local extremum needs a neighbour on each side, so at most every other sample is one
+        this.peaks = new int[size / 2 + 1];
+        this.troughs = new int[size / 2 + 1];
+        this.samplingRate = samplingRate;
+    }
+
+    // Refills the window from the pipeline buffers and picks up the detections that fall inside it
+    void fill(SignalRingBuffer rawBuffer, SignalRingBuffer filteredBuffer, double timestamp, long endIndex,
+              StreamingPeakDetector detector, SignalQualityIndex qualityIndex) {
+        length = filteredBuffer.copyLatest(filtered, filtered.length);
+        rawBuffer.copyLatest(raw, length);
+        this.timestamp = timestamp;
+        this.endIndex = endIndex;
+
+        long startIndex = endIndex - length + 1;
+        peakCount = copyEvents(detector.getPeaks(), startIndex, peaks);
+        troughCount = copyEvents(detector.getTroughs(), startIndex, troughs);
+        quality = qualityIndex.assess(raw, filtered, length);
+    }
+
+    // Copies events at or after startIndex as window positions; the ring holds them in stream order
+    private static int copyEvents(PeakEventRing events, long startIndex, int[] positions) {
+        int first = events.size();
+        while (first > 0 && events.getIndex(first - 1) >= startIndex) {
+            first--;
+        }
+        int count = Math.min(events.size() - first, positions.length);
+        for (int i = 0; i < count; i++) {
+            positions[i] = (int) (events.getIndex(first + i) - startIndex);
+        }
+        return count;
+    }
+
+    // Unfiltered BVP samples, oldest first
+    public double[] getRaw() {
+        return raw;
+    }
+
+    // Detrended and band-passed BVP samples, oldest first
+    public double[] getFiltered() {
+        return filtered;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    // Indices of local maxima of the filtered signal
+    public int[] getPeaks() {
+        return peaks;
+    }
+
+    public int getPeakCount() {
+        return peakCount;
+    }
+
+    // Indices of local minima of the filtered signal
+    public int[] getTroughs() {
+        return troughs;
+    }
+
+    public int getTroughCount() {
+        return troughCount;
+    }
+
+    public double getSamplingRate() {
+        return samplingRate;
+    }
+
+    // Timestamp of the newest sample in the window
+    public double getTimestamp() {
+        return timestamp;
+    }
+
+    // Index of the newest sample in the window, counted from the start of the stream
+    public long getEndIndex() {
+        return endIndex;
+    }
+
+    // Signal quality of the window between 0 and 1, see SignalQualityIndex
+    public double getQuality() {
+        return quality;
+    }
+
+    // True if the window is clean enough for the estimators to use
+    public boolean isUsable() {
+        return quality >= SignalQualityIndex.MIN_QUALITY;
+    }
+}
@@ -0,0 +1,80 @@
+package com.empatica.sample;
+
+/**
+ * Heart and respiratory rate updated once per second from sliding DFTs of the filtered BVP.
+ *
+ * Every sample updates two {@link SlidingDftBank}s in O(bins): an 8 s window over the heart rate
+ * band and a 30 s window over the breathing band. Once per second the dominant frequency of each
+ * band is read out, so estimates lag the signal by about a second instead of the 8 to 20 s hop
+ * of the window calculators, and no window is ever copied or recomputed.
+ */
+public class ContinuousRateEstimator implements BvpPipeline.SampleEstimator {
+
+    // Heart rate band, 42 to 210 beats per minute, over an 8 s window (7.5 bpm bins before interpolation)
+    private static final double MIN_HEART_HZ = 0.7;
+    private static final double MAX_HEART_HZ = 3.5;
+    private static final int HEART_WINDOW = 64 * 8;
+    // Breathing band, 6 to 30 breaths per minute, over a 30 s window (2 breaths/min bins)
+    private static final double MIN_BREATH_HZ = 0.1;
+    private static final double MAX_BREATH_HZ = 0.5;
+    private static final int BREATH_WINDOW = 64 * 30;
+
+    private final double samplingRate;
+    private final int updateInterval;
+    private final SlidingDftBank heartBank;
+    private final SlidingDftBank breathBank;
+    private int samplesSinceUpdate = 0;
+    private float heartRate = 0.0f;
+    private float respiratoryRate = 0.0f;
+    private boolean heartRateReady = false;
+    private boolean respiratoryRateReady = false;
+
+    public ContinuousRateEstimator() {
+        this(BvpPipeline.SAMPLING_RATE);
+    }
+
+    public ContinuousRateEstimator(double samplingRate) {
+        this.samplingRate = samplingRate;
+        this.updateInterval = (int) Math.round(samplingRate);
+        this.heartBank = SlidingDftBank.forBand(HEART_WINDOW, samplingRate, MIN_HEART_HZ, MAX_HEART_HZ);
+        this.breathBank = SlidingDftBank.forBand(BREATH_WINDOW, samplingRate, MIN_BREATH_HZ, MAX_BREATH_HZ);
+    }
+
+    @Override
+    public void onSample(double filtered, double timestamp) {
+        heartBank.add(filtered);
+        breathBank.add(filtered);
+        if (++samplesSinceUpdate < updateInterval) {
+            return;
+        }
+        samplesSinceUpdate = 0;
+        if (heartBank.isFull()) {
+            heartRate = (float) (heartBank.dominantFrequency(samplingRate) * 60.0);
+            heartRateReady = true;
+        }
+        if (breathBank.isFull()) {
+            respiratoryRate = (float) (breathBank.dominantFrequency(samplingRate) * 60.0);
+            respiratoryRateReady = true;
+        }
+    }
+
+    // True when a heart rate estimate was produced since the last getHeartRate()
+    public boolean isHeartRateReady() {
+        return heartRateReady;
+    }
+
+    public float getHeartRate() {
+        heartRateReady = false;
+        return heartRate;
+    }
+
+    // True when a respiratory rate estimate was produced since the last getRespiratoryRate()
+    public boolean isRespiratoryRateReady() {
+        return respiratoryRateReady;
+    }
+
+    public float getRespiratoryRate() {
+        respiratoryRateReady = false;
+        return respiratoryRate;
+    }
+}
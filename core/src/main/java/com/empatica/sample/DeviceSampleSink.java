@@ -0,0 +1,29 @@
+package com.empatica.sample;
+
+/**
+ * Platform-independent receiver of the streams of one wristband, mirroring the data callbacks of
+ * the Empatica SDK. The app adapts each device's SDK delegate to a sink; on the JVM a
+ * {@link DeviceSimulator} or a recorded session can drive it instead. All methods are called
+ * from one thread per device.
+ */
+public interface DeviceSampleSink {
+
+    void onBvp(float bvp, double timestamp);
+
+    // Raw device counts, 64 per g
+    void onAcceleration(int x, int y, int z, double timestamp);
+
+    // Skin conductance in microsiemens
+    void onEda(float conductance, double timestamp);
+
+    // Skin temperature in degrees Celsius
+    void onTemperature(float temperature, double timestamp);
+
+    // Inter-beat interval in seconds, reported at the end of the beat
+    void onIbi(float ibi, double timestamp);
+
+    // Battery level between 0 and 1
+    void onBattery(float level, double timestamp);
+
+    void onWristStatus(boolean onWrist);
+}
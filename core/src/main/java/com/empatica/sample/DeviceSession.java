@@ -0,0 +1,326 @@
+package com.empatica.sample;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * All processing state of one connected wristband: its own {@link BvpPipeline} with the vital
+ * sign estimators, its own {@link BvpProcessingWorker}, and the accelerometer, EDA, temperature
+ * and HRV engines. Nothing is shared between sessions, so several devices stream side by side
+ * without contending for buffers or locks.
+ *
+ * The session is the {@link DeviceSampleSink} of its device and must be fed from one thread,
+ * the device's callback thread. BVP samples and beats are handed to the worker; accelerometer,
+ * EDA and temperature samples are processed on the callback thread, as each costs O(1). Every
+ * callback of the {@link Listener} carries the session, so one listener can serve all devices.
+ * Samples are counted per channel with single-writer ordered stores that
+ * {@link #measureThroughput(long, double[])} reads from any thread.
+ *
+ * Every sample is stamped with {@link System#nanoTime()} on arrival. Its delivery delay, how much
+ * later than the fastest delivery seen on its channel it arrived relative to its device timestamp,
+ * goes into the {@code <channel>.delivery_delay} histogram; samples delayed by more than
+ * {@link #LATE_SECONDS} or older than one already received count as late. These and the
+ * worker's metrics are registered in {@link PerformanceMetrics} under
+ * {@code device.<name>.}, e.g. {@code device.<name>.bvp.delivery_delay},
+ * {@code device.<name>.<channel>.samples}, {@code .late} and {@code device.<name>.bvp.dropped},
+ * so no two devices update the same histogram or counter.
+ */
+public class DeviceSession implements DeviceSampleSink {
+
+    private static final String TAG = "DeviceSession";
+
+    // HRV windows in seconds, and their indices for getHrvEngine().getWindow(i)
+    public static final double HRV_SHORT_WINDOW = 60.0;
+    public static final double HRV_STANDARD_WINDOW = 300.0;
+    public static final int HRV_SHORT_WINDOW_INDEX = 0;
+    public static final int HRV_STANDARD_WINDOW_INDEX = 1;
+    // Length of the accelerometer summaries in seconds
+    private static final double ACCELEROMETER_EPOCH = 10.0;
+    // Length of the EDA summaries (SCR rate and tonic level) in seconds
+    private static final double EDA_SUMMARY_INTERVAL = 60.0;
+    // Length of the skin temperature summaries in seconds
+    private static final double TEMPERATURE_SUMMARY_INTERVAL = 60.0;
+
+    // Delivery delay beyond which a sample counts as late, in seconds
+    public static final double LATE_SECONDS = 2.0;
+
+    private static final RawChannel[] CHANNELS = RawChannel.values();
+
+    public interface Listener {
+        // Called on the session's worker after each BVP sample went through the pipeline
+        void onBvpProcessed(DeviceSession session, double timestamp);
+
+        // Called on the session's worker for each beat the HRV engine accepted
+        void onBeat(DeviceSession session, double timestamp);
+
+        // Called on the callback thread; the epoch is reused and must not be kept
+        void onAccelerometerEpoch(DeviceSession session, AccelerometerEpoch epoch);
+
+        // Called on the callback thread, see EdaEngine.Listener
+        void onScr(DeviceSession session, double onsetTimestamp, double amplitude, double riseTime);
+
+        void onEdaSummary(DeviceSession session, double startTimestamp, double scrPerMinute, double tonicLevel,
+                          double meanAmplitude);
+
+        // Called on the callback thread, see TemperatureEngine.Listener
+        void onTemperatureChange(DeviceSession session, double timestamp, double delta);
+
+        void onTemperatureSummary(DeviceSession session, double startTimestamp, double mean, double min,
+                                  double max, int rejected);
+    }
+
+    private final String deviceName;
+    private final Listener listener;
+    private final BvpPipeline bvpPipeline = new BvpPipeline();
+    private final HeartRateCalculator heartRateCalculator = new HeartRateCalculator();
+    private final RespiratoryRateCalculator respiratoryRateCalculator = new RespiratoryRateCalculator();
+    private final BloodPressureCalculator bloodPressureCalculator = new BloodPressureCalculator();
+    private final ContinuousRateEstimator continuousRateEstimator = new ContinuousRateEstimator();
+    private final HrvEngine hrvEngine = new HrvEngine(HRV_SHORT_WINDOW, HRV_STANDARD_WINDOW); // Fed on the worker
+    private final AccelerometerPipeline accelerometerPipeline;
+    private final EdaEngine edaEngine;
+    private final TemperatureEngine temperatureEngine;
+    private final BvpProcessingWorker worker;
+
+    // Samples received and samples late per channel, indexed by RawChannel ordinal; written by the callback thread only
+    private final AtomicLong[] sampleCounts = new AtomicLong[CHANNELS.length];
+    private final AtomicLong[] lateCounts = new AtomicLong[CHANNELS.length];
+    private final LatencyHistogram[] deliveryDelays = new LatencyHistogram[CHANNELS.length];
+    // Delivery tracking per channel, owned by the callback thread
+    private final double[] minDeliveryOffsets = new double[CHANNELS.length];
+    private final double[] latestTimestamps = new double[CHANNELS.length];
+    private volatile float batteryLevel = Float.NaN;
+
+    // Throughput reporting state, owned by the thread calling measureThroughput
+    private final long[] measuredCounts = new long[CHANNELS.length];
+    private long measuredNanos;
+    private long reportedDroppedSamples = 0;
+
+    public DeviceSession(String deviceName, Listener listener) {
+        this.deviceName = deviceName;
+        this.listener = listener;
+        for (RawChannel channel : CHANNELS) {
+            String prefix = metricPrefix(deviceName) + channel.getFileName();
+            sampleCounts[channel.ordinal()] = PerformanceMetrics.counter(prefix + ".samples");
+            lateCounts[channel.ordinal()] = PerformanceMetrics.counter(prefix + ".late");
+            deliveryDelays[channel.ordinal()] = PerformanceMetrics.histogram(prefix + ".delivery_delay");
+        }
+        Arrays.fill(minDeliveryOffsets, Double.POSITIVE_INFINITY);
+        Arrays.fill(latestTimestamps, Double.NEGATIVE_INFINITY);
+        bvpPipeline.subscribe(heartRateCalculator);
+        bvpPipeline.subscribe(respiratoryRateCalculator);
+        bvpPipeline.subscribe(bloodPressureCalculator);
+        bvpPipeline.subscribe(continuousRateEstimator);
+        accelerometerPipeline = new AccelerometerPipeline(ACCELEROMETER_EPOCH,
+                epoch -> listener.onAccelerometerEpoch(this, epoch));
+        edaEngine = new EdaEngine(EDA_SUMMARY_INTERVAL, new EdaEngine.Listener() {
+            @Override
+            public void onScr(double onsetTimestamp, double amplitude, double riseTime) {
+                listener.onScr(DeviceSession.this, onsetTimestamp, amplitude, riseTime);
+            }
+
+            @Override
+            public void onSummary(double startTimestamp, double scrPerMinute, double tonicLevel, double meanAmplitude) {
+                listener.onEdaSummary(DeviceSession.this, startTimestamp, scrPerMinute, tonicLevel, meanAmplitude);
+            }
+        });
+        temperatureEngine = new TemperatureEngine(TEMPERATURE_SUMMARY_INTERVAL, new TemperatureEngine.Listener() {
+            @Override
+            public void onChange(double timestamp, double delta) {
+                listener.onTemperatureChange(DeviceSession.this, timestamp, delta);
+            }
+
+            @Override
+            public void onSummary(double startTimestamp, double mean, double min, double max, int rejected) {
+                listener.onTemperatureSummary(DeviceSession.this, startTimestamp, mean, min, max, rejected);
+            }
+        });
+        worker = new BvpProcessingWorker(bvpPipeline, metricPrefix(deviceName), timestamp -> listener.onBvpProcessed(this, timestamp));
+    }
+
+    public void start() {
+        measuredNanos = System.nanoTime();
+        worker.start();
+    }
+
+    // Stops the worker once it has processed the queued samples and tasks; returns at once
+    public void stop() {
+        worker.stop();
+    }
+
+    // Waits until the worker has stopped and processed everything queued before stop()
+    public void join() {
+        worker.join();
+    }
+
+    public boolean isStopped() {
+        return worker.isFinished();
+    }
+
+    // Prefix of the session's metrics in PerformanceMetrics
+    public static String metricPrefix(String deviceName) {
+        return "device." + deviceName + ".";
+    }
+
+    // Runs the task on the session's worker, after the samples queued before it
+    public void execute(Runnable task) {
+        worker.execute(task);
+    }
+
+    @Override
+    public void onBvp(float bvp, double timestamp) {
+        long arrivalNanos = arrive(RawChannel.BVP, timestamp);
+        // A full queue drops the sample and counts it in device.<name>.bvp.dropped
+        worker.enqueue(bvp, timestamp, arrivalNanos);
+    }
+
+    @Override
+    public void onAcceleration(int x, int y, int z, double timestamp) {
+        arrive(RawChannel.ACCELERATION, timestamp);
+        accelerometerPipeline.add(x, y, z, timestamp);
+        // Motion lowers the quality of the BVP windows computed next
+        bvpPipeline.getQualityIndex().setMotion(accelerometerPipeline.getMotion());
+    }
+
+    @Override
+    public void onEda(float conductance, double timestamp) {
+        arrive(RawChannel.EDA, timestamp);
+        edaEngine.add(conductance, timestamp);
+    }
+
+    @Override
+    public void onTemperature(float temperature, double timestamp) {
+        arrive(RawChannel.TEMPERATURE, timestamp);
+        temperatureEngine.add(temperature, timestamp);
+    }
+
+    @Override
+    public void onIbi(float ibi, double timestamp) {
+        arrive(RawChannel.IBI, timestamp);
+        // Beats arrive about once a second; the HRV engine lives on the worker
+        worker.execute(() -> {
+            if (hrvEngine.add(timestamp, ibi)) {
+                listener.onBeat(this, timestamp);
+            } else {
+                Diagnostics.d(TAG, deviceName + ": rejected IBI " + ibi + " at timestamp " + timestamp);
+            }
+        });
+    }
+
+    @Override
+    public void onBattery(float level, double timestamp) {
+        batteryLevel = level;
+    }
+
+    @Override
+    public void onWristStatus(boolean onWrist) {
+        // Off the wrist every BVP window scores 0 and the estimators skip it
+        bvpPipeline.getQualityIndex().setOnWrist(onWrist);
+    }
+
+    // Counts the sample, checks whether it is late and returns its arrival time
+    private long arrive(RawChannel channel, double timestamp) {
+        long now = System.nanoTime();
+        int i = channel.ordinal();
+        // Single writer, so a plain read and an ordered store replace a locked increment
+        AtomicLong count = sampleCounts[i];
+        count.lazySet(count.get() + 1);
+
+        // Device and phone clocks differ by an unknown offset; the smallest one seen is the fastest delivery
+        double offset = now / 1e9 - timestamp;
+        if (offset < minDeliveryOffsets[i]) {
+            minDeliveryOffsets[i] = offset;
+        }
+        double delay = offset - minDeliveryOffsets[i];
+        deliveryDelays[i].record((long) (delay * 1e9));
+        if (delay > LATE_SECONDS || timestamp < latestTimestamps[i]) {
+            AtomicLong late = lateCounts[i];
+            late.lazySet(late.get() + 1);
+        } else {
+            latestTimestamps[i] = timestamp;
+        }
+        return now;
+    }
+
+    public long getSampleCount(RawChannel channel) {
+        return sampleCounts[channel.ordinal()].get();
+    }
+
+    // Samples that arrived late or out of order
+    public long getLateCount(RawChannel channel) {
+        return lateCounts[channel.ordinal()].get();
+    }
+
+    /**
+     * Fills rates, indexed by {@link RawChannel} ordinal, with the samples per second received
+     * since the previous call or since {@link #start()}. Call from one thread at a time.
+     */
+    public void measureThroughput(long nowNanos, double[] rates) {
+        double seconds = (nowNanos - measuredNanos) / 1e9;
+        measuredNanos = nowNanos;
+        for (int i = 0; i < CHANNELS.length; i++) {
+            long count = sampleCounts[i].get();
+            rates[i] = seconds > 0.0 ? (count - measuredCounts[i]) / seconds : 0.0;
+            measuredCounts[i] = count;
+        }
+    }
+
+    // BVP samples dropped since the previous call; call from the same thread as measureThroughput
+    long takeNewDroppedSamples() {
+        long dropped = worker.getDroppedSamples();
+        long newlyDropped = dropped - reportedDroppedSamples;
+        reportedDroppedSamples = dropped;
+        return newlyDropped;
+    }
+
+    public String getDeviceName() {
+        return deviceName;
+    }
+
+    // Latest battery level between 0 and 1, NaN before the device reported one
+    public float getBatteryLevel() {
+        return batteryLevel;
+    }
+
+    public BvpPipeline getBvpPipeline() {
+        return bvpPipeline;
+    }
+
+    public BvpProcessingWorker getWorker() {
+        return worker;
+    }
+
+    public HeartRateCalculator getHeartRateCalculator() {
+        return heartRateCalculator;
+    }
+
+    public RespiratoryRateCalculator getRespiratoryRateCalculator() {
+        return respiratoryRateCalculator;
+    }
+
+    public BloodPressureCalculator getBloodPressureCalculator() {
+        return bloodPressureCalculator;
+    }
+
+    public ContinuousRateEstimator getContinuousRateEstimator() {
+        return continuousRateEstimator;
+    }
+
+    // Read only from the session's worker
+    public HrvEngine getHrvEngine() {
+        return hrvEngine;
+    }
+
+    // Read only from the callback thread, except getMotion
+    public AccelerometerPipeline getAccelerometerPipeline() {
+        return accelerometerPipeline;
+    }
+
+    public EdaEngine getEdaEngine() {
+        return edaEngine;
+    }
+
+    public TemperatureEngine getTemperatureEngine() {
+        return temperatureEngine;
+    }
+}
@@ -0,0 +1,139 @@
+package com.empatica.sample;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Owns the {@link DeviceSession}s of all connected wristbands, keyed by device name.
+ *
+ * Opening a session creates it through the {@link Factory} and starts its worker; closing it
+ * asks the worker to stop after the queued samples and returns without waiting, so it may be
+ * called on the main thread. {@link #awaitStopped()} waits for every worker closed so far to
+ * finish, for example before closing the store they write to. The map is only touched when devices connect or
+ * disconnect: each device's callbacks go straight to the session it was given, so the sample
+ * path never looks up or locks anything shared. {@link #reportThroughput()} reports the sample
+ * rate of every channel of every device, and the BVP samples each one dropped. The
+ * {@link PerformanceMetrics} of a device are removed when its session closes.
+ */
+public class DeviceSessionManager {
+
+    private static final String TAG = "DeviceSessionManager";
+
+    private static final RawChannel[] CHANNELS = RawChannel.values();
+
+    public interface Factory {
+        // Creates the unstarted session of a newly connected device
+        DeviceSession create(String deviceName);
+    }
+
+    private final Factory factory;
+    private final ConcurrentMap<String, DeviceSession> sessions = new ConcurrentHashMap<>();
+    // Closed sessions whose workers may still be draining their queues
+    private final Queue<DeviceSession> stopping = new ConcurrentLinkedQueue<>();
+    private final double[] rates = new double[CHANNELS.length];
+
+    public DeviceSessionManager(Factory factory) {
+        this.factory = factory;
+    }
+
+    // Every device gets its own session, all reporting to the same listener
+    public DeviceSessionManager(DeviceSession.Listener listener) {
+        this(deviceName -> new DeviceSession(deviceName, listener));
+    }
+
+    // Returns the running session of the device, creating and starting it if needed
+    public DeviceSession open(String deviceName) {
+        DeviceSession session = sessions.get(deviceName);
+        if (session != null) {
+            return session;
+        }
+        session = factory.create(deviceName);
+        DeviceSession existing = sessions.putIfAbsent(deviceName, session);
+        if (existing != null) {
+            // Opened concurrently; the session created here was never started
+            return existing;
+        }
+        session.start();
+        Diagnostics.i(TAG, "Opened session for " + deviceName + ", " + sessions.size() + " active");
+        return session;
+    }
+
+    // Stops and forgets the device's session without waiting for its worker; returns false if it had none
+    public boolean close(String deviceName) {
+        DeviceSession session = sessions.remove(deviceName);
+        if (session == null) {
+            return false;
+        }
+        session.stop();
+        stopping.removeIf(DeviceSession::isStopped);
+        stopping.add(session);
+        // After any report still running, so it cannot register the device's gauges again
+        synchronized (this) {
+            PerformanceMetrics.remove(DeviceSession.metricPrefix(deviceName));
+        }
+        Diagnostics.i(TAG, "Closed session for " + deviceName + ", " + sessions.size() + " active");
+        return true;
+    }
+
+    public void closeAll() {
+        for (String deviceName : sessions.keySet()) {
+            close(deviceName);
+        }
+    }
+
+    // Waits until the workers of all sessions closed so far have processed their queued samples
+    public void awaitStopped() {
+        DeviceSession session;
+        while ((session = stopping.poll()) != null) {
+            session.join();
+        }
+    }
+
+    // The device's session, or null if it has none
+    public DeviceSession get(String deviceName) {
+        return sessions.get(deviceName);
+    }
+
+    public Collection<DeviceSession> getSessions() {
+        return Collections.unmodifiableCollection(sessions.values());
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Records the per-channel sample rate of every session since the previous report as
+     * {@code device.<name>.<channel>_rate}, sets the gauge {@code device.<name>.<channel>.rate} in
+     * {@link PerformanceMetrics} and logs one line per device. Meant for a periodic
+     * timer; the sessions keep counting while it runs.
+     */
+    public synchronized void reportThroughput() {
+        long now = System.nanoTime();
+        for (DeviceSession session : sessions.values()) {
+            String deviceName = session.getDeviceName();
+            session.measureThroughput(now, rates);
+            StringBuilder line = new StringBuilder(deviceName).append(':');
+            for (RawChannel channel : CHANNELS) {
+                double rate = rates[channel.ordinal()];
+                Diagnostics.record("device." + deviceName + "." + channel.getFileName() + "_rate", rate);
+                PerformanceMetrics.gauge(DeviceSession.metricPrefix(deviceName) + channel.getFileName() + ".rate").set(rate);
+                line.append(' ').append(channel.getFileName()).append(' ')
+                        .append(String.format("%.1f", rate)).append("/s");
+            }
+            BvpProcessingWorker worker = session.getWorker();
+            line.append(", queue ").append(worker.getQueueDepth());
+            Diagnostics.d(TAG, line.toString());
+
+            long dropped = session.takeNewDroppedSamples();
+            if (dropped > 0) {
+                Diagnostics.w(TAG, deviceName + ": dropped " + dropped + " BVP samples, queue depth "
+                        + worker.getQueueDepth() + ", max " + worker.getMaxQueueDepth());
+            }
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package com.empatica.sample;
+
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Virtual E4 wristband: streams synthetic BVP (64 Hz), acceleration (32 Hz), EDA and skin
+ * temperature (4 Hz), inter-beat intervals and battery levels into a {@link DeviceSampleSink}
+ * from its own thread, as the SDK's callback thread would.
+ *
+ * Beats follow the {@link SimulatedDeviceProfile}'s heart rate with random variability and
+ * respiratory sinus arrhythmia; every beat is a systolic peak with a diastolic wave, reported as
+ * an IBI when it ends. Breathing modulates the BVP amplitude and baseline. Motion episodes shake
+ * the accelerometer and add a large low-frequency artifact to the BVP; dropouts withhold every
+ * channel while the signals keep evolving, so the stream resumes with a gap. Skin conductance
+ * responses are Bateman-shaped and the temperature drifts slowly. All state advances in O(1) per
+ * sample without allocation, so one machine can run many devices at a multiple of real time,
+ * paced or, with {@link #MAX_SPEED}, as fast as the sinks consume.
+ */
+public class DeviceSimulator implements Runnable {
+
+    private static final String TAG = "DeviceSimulator";
+
+    // Speed value that delivers samples as fast as the sink consumes them
+    public static final double MAX_SPEED = 0.0;
+
+    private static final double BVP_RATE = BvpPipeline.SAMPLING_RATE;
+    // BVP samples per accelerometer sample and per EDA or temperature sample
+    private static final int ACCELERATION_DIVIDER = 2;
+    private static final int SLOW_DIVIDER = 16;
+    private static final double SLOW_RATE = BVP_RATE / SLOW_DIVIDER;
+    // Seconds of simulated time between battery reports
+    private static final double BATTERY_INTERVAL = 60.0;
+    // Simulation only sleeps when it is at least this far ahead of the requested pace
+    private static final long MIN_SLEEP_NANOS = 2_000_000L;
+
+    // Pulse amplitude and the share of it that breathing modulates, in BVP units
+    private static final double PULSE_AMPLITUDE = 100.0;
+    private static final double RESPIRATORY_MODULATION = 0.15;
+    // Relative change of the beat interval over a breath
+    private static final double SINUS_ARRHYTHMIA = 0.05;
+    // Shortest and longest beat interval generated, in seconds
+    private static final double MIN_IBI = 0.3;
+    private static final double MAX_IBI = 2.0;
+    // Arm movement during a motion episode: frequency in Hz and amplitude in g, and the BVP
+    // artifact it causes relative to the pulse amplitude
+    private static final double MOTION_FREQUENCY = 1.8;
+    private static final double MOTION_AMPLITUDE = 0.6;
+    private static final double MOTION_BVP_ARTIFACT = 3.0;
+    // Bateman time constants of an SCR in seconds, and the range of SCR amplitudes in microsiemens
+    private static final double SCR_TAU_RISE = 0.75;
+    private static final double SCR_TAU_DECAY = 2.0;
+    private static final double MIN_SCR_AMPLITUDE = 0.05;
+    private static final double MAX_SCR_AMPLITUDE = 0.5;
+    // Slow drift of the tonic conductance and the temperature: amplitude and period in seconds
+    private static final double CONDUCTANCE_DRIFT = 0.3;
+    private static final double TEMPERATURE_DRIFT = 0.3;
+    private static final double DRIFT_PERIOD = 1800.0;
+
+    // Mean of the pulse shape over one beat, removed so the BVP has no DC level like the E4's
+    private static final double PULSE_MEAN = pulseIntegral();
+
+    private final DeviceSampleSink sink;
+    private final Random random;
+    private final double startTimestamp;
+    private final long totalSamples;
+    private final Thread thread;
+    private volatile double speed;
+    private volatile boolean running = false;
+
+    // Profile, converted to per-sample quantities
+    private final double meanIbi;
+    private final double ibiDeviation;
+    private final double respiratoryStep;
+    private final double bvpNoise;
+    private final double motionProbability;
+    private final long motionSamples;
+    private final double dropoutProbability;
+    private final long dropoutSamples;
+    private final double scrProbability;
+    private final double conductance;
+    private final double temperature;
+    private final double batteryDrainPerSecond;
+
+    private final double scrRiseDecay = Math.exp(-1.0 / (SCR_TAU_RISE * SLOW_RATE));
+    private final double scrFallDecay = Math.exp(-1.0 / (SCR_TAU_DECAY * SLOW_RATE));
+    private final double scrGain = 1.0 / batemanPeak();
+
+    // Signal state
+    private double beatPhase = 0.0;
+    private double currentIbi;
+    private double respiratoryPhase = 0.0;
+    private long motionEnd = -1;
+    private double motionPhase = 0.0;
+    private long dropoutEnd = -1;
+    private double scrRise = 0.0;
+    private double scrFall = 0.0;
+    private double batteryLevel;
+    private double nextBatteryReport = 0.0;
+
+    // Counters, written by the simulation thread only
+    private volatile long deliveredSamples = 0;
+    private volatile long withheldSamples = 0;
+    private volatile long beats = 0;
+
+    /**
+     * @param startTimestamp timestamp of the first sample, in seconds since the epoch
+     * @param durationSeconds simulated time to stream, or infinity until {@link #stop()}
+     * @param speed multiple of real time, or {@link #MAX_SPEED}
+     */
+    public DeviceSimulator(String name, SimulatedDeviceProfile profile, DeviceSampleSink sink,
+                           double startTimestamp, double durationSeconds, double speed) {
+        this.sink = sink;
+        this.random = new Random(profile.getSeed());
+        this.startTimestamp = startTimestamp;
+        this.totalSamples = Double.isInfinite(durationSeconds) ? Long.MAX_VALUE : (long) (durationSeconds * BVP_RATE);
+        this.speed = speed;
+        this.thread = new Thread(this, TAG + " " + name);
+
+        meanIbi = 60.0 / profile.getHeartRate();
+        ibiDeviation = profile.getHeartRateVariability() * meanIbi;
+        respiratoryStep = 2.0 * Math.PI * profile.getRespiratoryRate() / 60.0 / BVP_RATE;
+        bvpNoise = profile.getBvpNoise() * PULSE_AMPLITUDE;
+        motionProbability = profile.getMotionArtifactsPerMinute() / 60.0 / BVP_RATE;
+        motionSamples = (long) (profile.getMotionArtifactSeconds() * BVP_RATE);
+        dropoutProbability = profile.getDropoutsPerMinute() / 60.0 / BVP_RATE;
+        dropoutSamples = (long) (profile.getDropoutSeconds() * BVP_RATE);
+        scrProbability = profile.getScrsPerMinute() / 60.0 / SLOW_RATE;
+        conductance = profile.getConductance();
+        temperature = profile.getTemperature();
+        batteryLevel = profile.getBatteryLevel();
+        batteryDrainPerSecond = profile.getBatteryDrainPerHour() / 3600.0;
+        currentIbi = nextIbi();
+    }
+
+    public void start() {
+        running = true;
+        thread.start();
+    }
+
+    // Stops streaming and waits for the simulation thread to finish
+    public void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+        join();
+    }
+
+    // Waits until the whole duration has been streamed or the simulator was stopped
+    public void join() {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Changes the pace while running: 1.0 is real time, MAX_SPEED disables pacing
+    public void setSpeed(double speed) {
+        this.speed = speed;
+        LockSupport.unpark(thread);
+    }
+
+    @Override
+    public void run() {
+        sink.onWristStatus(true);
+        // Pacing reference: the sample due at the wall-clock instant, reset when the speed changes
+        long referenceSample = 0;
+        long referenceNanos = System.nanoTime();
+        double referenceSpeed = speed;
+        for (long i = 0; i < totalSamples && running; i++) {
+            double currentSpeed = speed;
+            if (currentSpeed != referenceSpeed) {
+                referenceSample = i;
+                referenceNanos = System.nanoTime();
+                referenceSpeed = currentSpeed;
+            } else if (currentSpeed > MAX_SPEED) {
+                long dueNanos = referenceNanos + (long) ((i - referenceSample) / BVP_RATE / currentSpeed * 1e9);
+                long aheadNanos = dueNanos - System.nanoTime();
+                if (aheadNanos >= MIN_SLEEP_NANOS) {
+                    LockSupport.parkNanos(this, aheadNanos);
+                }
+            }
+            step(i);
+        }
+        running = false;
+    }
+
+    // Advances every signal by one BVP sample and delivers what the link lets through
+    private void step(long i) {
+        double timestamp = startTimestamp + i / BVP_RATE;
+        if (i >= dropoutEnd && random.nextDouble() < dropoutProbability) {
+            dropoutEnd = i + dropoutSamples;
+        }
+        if (i >= motionEnd && random.nextDouble() < motionProbability) {
+            motionEnd = i + motionSamples;
+        }
+        boolean connected = i >= dropoutEnd;
+        boolean moving = i < motionEnd;
+        long delivered = 0;
+        long withheld = 0;
+
+        // Breathing and beats
+        respiratoryPhase += respiratoryStep;
+        if (respiratoryPhase > 2.0 * Math.PI) {
+            respiratoryPhase -= 2.0 * Math.PI;
+        }
+        double breath = Math.sin(respiratoryPhase);
+        double bvp = (pulse(beatPhase) - PULSE_MEAN) * PULSE_AMPLITUDE * (1.0 + RESPIRATORY_MODULATION * breath)
+                + RESPIRATORY_MODULATION * PULSE_AMPLITUDE * breath
+                + bvpNoise * random.nextGaussian();
+        if (moving) {
+            motionPhase += 2.0 * Math.PI * MOTION_FREQUENCY / BVP_RATE;
+            bvp += MOTION_BVP_ARTIFACT * PULSE_AMPLITUDE
+                    * (Math.sin(0.7 * motionPhase) + 0.3 * random.nextGaussian());
+        }
+        if (connected) {
+            sink.onBvp((float) bvp, timestamp);
+            delivered++;
+        } else {
+            withheld++;
+        }
+        beatPhase += 1.0 / (currentIbi * BVP_RATE);
+        if (beatPhase >= 1.0) {
+            beatPhase -= 1.0;
+            beats++;
+            if (connected) {
+                sink.onIbi((float) currentIbi, timestamp);
+                delivered++;
+            } else {
+                withheld++;
+            }
+            currentIbi = nextIbi();
+        }
+
+        if (i % ACCELERATION_DIVIDER == 0) {
+            double x = 0.01 * random.nextGaussian();
+            double y = 0.01 * random.nextGaussian();
+            double z = 1.0 + 0.01 * random.nextGaussian();
+            if (moving) {
+                x += MOTION_AMPLITUDE * Math.sin(motionPhase);
+                y += 0.5 * MOTION_AMPLITUDE * Math.sin(motionPhase + 1.0);
+                z += 0.3 * MOTION_AMPLITUDE * Math.sin(2.0 * motionPhase);
+            }
+            if (connected) {
+                double countsPerG = AccelerometerPipeline.COUNTS_PER_G;
+                sink.onAcceleration((int) Math.round(x * countsPerG), (int) Math.round(y * countsPerG),
+                        (int) Math.round(z * countsPerG), timestamp);
+                delivered++;
+            } else {
+                withheld++;
+            }
+        }
+
+        if (i % SLOW_DIVIDER == 0) {
+            double seconds = i / BVP_RATE;
+            double drift = Math.sin(2.0 * Math.PI * seconds / DRIFT_PERIOD);
+            if (random.nextDouble() < scrProbability) {
+                double amplitude = MIN_SCR_AMPLITUDE + (MAX_SCR_AMPLITUDE - MIN_SCR_AMPLITUDE) * random.nextDouble();
+                scrRise += amplitude;
+                scrFall += amplitude;
+            }
+            scrRise *= scrRiseDecay;
+            scrFall *= scrFallDecay;
+            double eda = conductance + CONDUCTANCE_DRIFT * drift + scrGain * (scrFall - scrRise)
+                    + 0.002 * random.nextGaussian();
+            double skin = temperature + TEMPERATURE_DRIFT * drift + 0.01 * random.nextGaussian();
+            if (connected) {
+                sink.onEda((float) eda, timestamp);
+                sink.onTemperature((float) skin, timestamp);
+                delivered += 2;
+            } else {
+                withheld += 2;
+            }
+            if (seconds >= nextBatteryReport) {
+                nextBatteryReport += BATTERY_INTERVAL;
+                batteryLevel = Math.max(0.0, batteryLevel - batteryDrainPerSecond * BATTERY_INTERVAL);
+                if (connected) {
+                    sink.onBattery((float) batteryLevel, timestamp);
+                }
+            }
+        }
+
+        if (delivered > 0) {
+            deliveredSamples += delivered;
+        }
+        if (withheld > 0) {
+            withheldSamples += withheld;
+        }
+    }
+
+    private double nextIbi() {
+        double ibi = meanIbi * (1.0 + SINUS_ARRHYTHMIA * Math.sin(respiratoryPhase))
+                + ibiDeviation * random.nextGaussian();
+        return Math.max(MIN_IBI, Math.min(MAX_IBI, ibi));
+    }
+
+    // Pulse wave over one beat, phase in [0, 1): a systolic peak followed by the diastolic wave
+    private static double pulse(double phase) {
+        double systolic = (phase - 0.2) / 0.15;
+        double diastolic = (phase - 0.5) / 0.18;
+        return Math.exp(-systolic * systolic) + 0.4 * Math.exp(-diastolic * diastolic);
+    }
+
+    private static double pulseIntegral() {
+        int steps = 1000;
+        double sum = 0.0;
+        for (int i = 0; i < steps; i++) {
+            sum += pulse((i + 0.5) / steps);
+        }
+        return sum / steps;
+    }
+
+    // Peak of the unit Bateman response, so SCR amplitudes come out as configured
+    private static double batemanPeak() {
+        double peakTime = Math.log(SCR_TAU_DECAY / SCR_TAU_RISE) / (1.0 / SCR_TAU_RISE - 1.0 / SCR_TAU_DECAY);
+        return Math.exp(-peakTime / SCR_TAU_DECAY) - Math.exp(-peakTime / SCR_TAU_RISE);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Callbacks made so far, all channels together
+    public long getDeliveredSamples() {
+        return deliveredSamples;
+    }
+
+    // Samples generated during dropouts and never delivered
+    public long getWithheldSamples() {
+        return withheldSamples;
+    }
+
+    public long getBeatCount() {
+        return beats;
+    }
+}
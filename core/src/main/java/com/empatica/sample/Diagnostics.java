@@ -0,0 +1,70 @@
+package com.empatica.sample;
+
+/**
+ * Static entry point the processing code logs and reports metrics through, mirroring the
+ * {@code android.util.Log} calls it replaces. Messages go to {@link #setSink(DiagnosticsSink)
+ * the installed sink}; until one is installed, warnings and errors are printed to standard
+ * error and everything else is dropped.
+ */
+public final class Diagnostics {
+
+    private static final DiagnosticsSink STANDARD_ERROR = new DiagnosticsSink() {
+        @Override
+        public void log(int level, String tag, String message, Throwable error) {
+            if (level >= WARN) {
+                System.err.println((level == ERROR ? "E/" : "W/") + tag + ": " + message
+                        + (error != null ? ": " + error : ""));
+            }
+        }
+
+        @Override
+        public void count(String name, long delta) {
+        }
+
+        @Override
+        public void record(String name, double value) {
+        }
+    };
+
+    private static volatile DiagnosticsSink sink = STANDARD_ERROR;
+
+    private Diagnostics() {
+    }
+
+    // Installs the sink for the whole process; null restores the default
+    public static void setSink(DiagnosticsSink newSink) {
+        sink = newSink != null ? newSink : STANDARD_ERROR;
+    }
+
+    public static void d(String tag, String message) {
+        sink.log(DiagnosticsSink.DEBUG, tag, message, null);
+    }
+
+    public static void i(String tag, String message) {
+        sink.log(DiagnosticsSink.INFO, tag, message, null);
+    }
+
+    public static void w(String tag, String message) {
+        sink.log(DiagnosticsSink.WARN, tag, message, null);
+    }
+
+    public static void w(String tag, String message, Throwable error) {
+        sink.log(DiagnosticsSink.WARN, tag, message, error);
+    }
+
+    public static void e(String tag, String message) {
+        sink.log(DiagnosticsSink.ERROR, tag, message, null);
+    }
+
+    public static void e(String tag, String message, Throwable error) {
+        sink.log(DiagnosticsSink.ERROR, tag, message, error);
+    }
+
+    public static void count(String name, long delta) {
+        sink.count(name, delta);
+    }
+
+    public static void record(String name, double value) {
+        sink.record(name, value);
+    }
+}
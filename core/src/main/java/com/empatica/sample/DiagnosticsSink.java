@@ -0,0 +1,26 @@
+package com.empatica.sample;
+
+/**
+ * Destination for the log messages and metrics emitted by the platform-independent processing
+ * code. The app routes them to logcat; batch tools on the JVM can print, collect or drop them.
+ * Implementations may be called from any processing thread and must be thread-safe.
+ */
+public interface DiagnosticsSink {
+
+    // Log levels, with the same values as android.util.Log
+    int DEBUG = 3;
+    int INFO = 4;
+    int WARN = 5;
+    int ERROR = 6;
+
+    /**
+     * @param error optional cause, may be null
+     */
+    void log(int level, String tag, String message, Throwable error);
+
+    // Adds delta to a monotonically increasing counter, e.g. dropped samples
+    void count(String name, long delta);
+
+    // Records one observation of a measured value, e.g. an estimate or a duration
+    void record(String name, double value);
+}
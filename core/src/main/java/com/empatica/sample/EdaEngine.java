@@ -0,0 +1,183 @@
+package com.empatica.sample;
+
+/**
+ * Streaming electrodermal activity (EDA) analysis: tonic/phasic separation and skin conductance
+ * response (SCR) detection on the 4 Hz skin conductance of the E4.
+ *
+ * The conductance is smoothed and deconvolved sample by sample with the Bateman impulse response
+ * of a sudomotor burst (rise 0.75 s, decay 2 s, as in continuous decomposition analysis). The
+ * inverse of that two-pole response is a three-tap filter, so the deconvolution costs O(1) per
+ * sample and turns each overlapping SCR back into a short burst of the sudomotor driver. The
+ * tonic driver is the {@link RunningMedian} of the driver over 20 s, which bursts do not move,
+ * and the rest is the phasic driver. A burst of the phasic driver above a threshold opens an SCR,
+ * whose amplitude and rise time are measured on the smoothed conductance from the burst onset
+ * to the following conductance peak. SCR counts and the tonic level are summarised at a fixed
+ * interval. Memory is constant however long the session runs. Not thread-safe.
+ */
+public class EdaEngine {
+
+    // Empatica E4 EDA sampling rate
+    public static final double SAMPLING_RATE = 4.0;
+
+    // Bateman time constants of one sudomotor burst, in seconds
+    private static final double TAU_RISE = 0.75;
+    private static final double TAU_DECAY = 2.0;
+    // Time constant of the smoothing before deconvolution, in seconds
+    private static final double SMOOTHING_TIME_CONSTANT = 0.5;
+    // Window of the tonic driver median, in seconds
+    private static final double TONIC_WINDOW = 20.0;
+    // Phasic driver, in microsiemens, that opens an SCR
+    private static final double DRIVER_THRESHOLD = 0.02;
+    // Smallest amplitude reported as an SCR, in microsiemens
+    private static final double MIN_AMPLITUDE = 0.01;
+    // Conductance drop below the peak that closes an SCR, in microsiemens
+    private static final double PEAK_HYSTERESIS = 0.005;
+    // A rise longer than this is drift rather than a response and is dropped, in seconds
+    private static final double MAX_RISE_TIME = 10.0;
+
+    public interface Listener {
+        // Called for each detected SCR; amplitude in microsiemens, rise time in seconds
+        void onScr(double onsetTimestamp, double amplitude, double riseTime);
+
+        // Called at the end of every summary interval; tonic level in microsiemens
+        void onSummary(double startTimestamp, double scrPerMinute, double tonicLevel, double meanAmplitude);
+    }
+
+    private final Listener listener;
+    private final int summarySamples;
+    private final double smoothingAlpha = 1.0 / (SMOOTHING_TIME_CONSTANT * SAMPLING_RATE);
+    private final double a1 = Math.exp(-1.0 / (TAU_RISE * SAMPLING_RATE));
+    private final double a2 = Math.exp(-1.0 / (TAU_DECAY * SAMPLING_RATE));
+    // Scales the driver so that a constant conductance gives an equal constant driver
+    private final double deconvolutionGain = 1.0 / ((1.0 - a1) * (1.0 - a2));
+    private final RunningMedian tonicDriver = new RunningMedian((int) Math.round(TONIC_WINDOW * SAMPLING_RATE));
+
+    private long sampleCount = 0;
+    private double smoothed;
+    private double previousSmoothed;
+    private double beforePreviousSmoothed;
+    private double previousTimestamp;
+    private double driver = 0.0;
+    private double phasicDriver = 0.0;
+
+    // SCR in progress
+    private boolean rising = false;
+    private double onsetTimestamp;
+    private double onsetLevel;
+    private double peakTimestamp;
+    private double peakLevel;
+
+    // Sums of the current summary interval
+    private int intervalSamples = 0;
+    private double intervalStart;
+    private double tonicSum = 0.0;
+    private int intervalScrs = 0;
+    private double amplitudeSum = 0.0;
+    private long totalScrs = 0;
+
+    public EdaEngine(double summarySeconds, Listener listener) {
+        this.summarySamples = (int) Math.round(summarySeconds * SAMPLING_RATE);
+        if (summarySamples <= 0) {
+            throw new IllegalArgumentException("Summary interval too short: " + summarySeconds);
+        }
+        this.listener = listener;
+    }
+
+    // Ingests one skin conductance sample in microsiemens
+    public void add(float conductance, double timestamp) {
+        if (sampleCount == 0) {
+            smoothed = conductance;
+            previousSmoothed = conductance;
+            beforePreviousSmoothed = conductance;
+        }
+        smoothed += smoothingAlpha * (conductance - smoothed);
+
+        // Inverse Bateman filter; the driver it yields belongs to the previous sample
+        driver = deconvolutionGain
+                * (smoothed - (a1 + a2) * previousSmoothed + a1 * a2 * beforePreviousSmoothed);
+        tonicDriver.add(driver);
+        phasicDriver = driver - tonicDriver.getMedian();
+        if (tonicDriver.isFull()) {
+            detectScr(previousTimestamp, previousSmoothed);
+        } else {
+            // Wait for a full tonic window; until then the onset follows the conductance
+            onsetTimestamp = previousTimestamp;
+            onsetLevel = previousSmoothed;
+        }
+
+        if (intervalSamples == 0) {
+            intervalStart = timestamp;
+        }
+        intervalSamples++;
+        tonicSum += tonicDriver.getMedian();
+        if (intervalSamples == summarySamples) {
+            if (listener != null) {
+                double minutes = intervalSamples / SAMPLING_RATE / 60.0;
+                listener.onSummary(intervalStart, intervalScrs / minutes, tonicSum / intervalSamples,
+                        intervalScrs == 0 ? 0.0 : amplitudeSum / intervalScrs);
+            }
+            intervalSamples = 0;
+            tonicSum = 0.0;
+            intervalScrs = 0;
+            amplitudeSum = 0.0;
+        }
+
+        beforePreviousSmoothed = previousSmoothed;
+        previousSmoothed = smoothed;
+        previousTimestamp = timestamp;
+        sampleCount++;
+    }
+
+    // Advances the SCR state machine with the phasic driver and conductance of one sample
+    private void detectScr(double timestamp, double level) {
+        if (!rising) {
+            if (phasicDriver <= 0.0) {
+                // The latest quiet sample is the onset of the next response
+                onsetTimestamp = timestamp;
+                onsetLevel = level;
+            } else if (phasicDriver > DRIVER_THRESHOLD) {
+                rising = true;
+                peakTimestamp = timestamp;
+                peakLevel = level;
+            }
+            return;
+        }
+        if (level > peakLevel) {
+            peakTimestamp = timestamp;
+            peakLevel = level;
+        }
+        boolean peaked = level < peakLevel - PEAK_HYSTERESIS;
+        if (peaked || timestamp - onsetTimestamp > MAX_RISE_TIME) {
+            double amplitude = peakLevel - onsetLevel;
+            if (peaked && amplitude >= MIN_AMPLITUDE) {
+                intervalScrs++;
+                amplitudeSum += amplitude;
+                totalScrs++;
+                if (listener != null) {
+                    listener.onScr(onsetTimestamp, amplitude, peakTimestamp - onsetTimestamp);
+                }
+            }
+            rising = false;
+            onsetTimestamp = timestamp;
+            onsetLevel = level;
+        }
+    }
+
+    // Tonic level in microsiemens
+    public double getTonicLevel() {
+        return tonicDriver.getMedian();
+    }
+
+    // Phasic sudomotor driver of the previous sample, in microsiemens
+    public double getPhasicDriver() {
+        return phasicDriver;
+    }
+
+    public long getTotalScrs() {
+        return totalScrs;
+    }
+
+    public long getSampleCount() {
+        return sampleCount;
+    }
+}
@@ -0,0 +1,72 @@
+package com.empatica.sample;
+
+import java.util.Arrays;
+
+/**
+ * Growable series of {@code (timestamp, value)} estimates in primitive arrays, in the order they
+ * were produced.
+ */
+public class EstimateSeries {
+
+    private double[] timestamps;
+    private double[] values;
+    private int size = 0;
+
+    public EstimateSeries() {
+        this(64);
+    }
+
+    public EstimateSeries(int initialCapacity) {
+        timestamps = new double[Math.max(1, initialCapacity)];
+        values = new double[timestamps.length];
+    }
+
+    public void add(double timestamp, double value) {
+        ensureCapacity(size + 1);
+        timestamps[size] = timestamp;
+        values[size] = value;
+        size++;
+    }
+
+    // Appends every estimate of the other series after the ones already here
+    public void addAll(EstimateSeries other) {
+        ensureCapacity(size + other.size);
+        System.arraycopy(other.timestamps, 0, timestamps, size, other.size);
+        System.arraycopy(other.values, 0, values, size, other.size);
+        size += other.size;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > timestamps.length) {
+            int newCapacity = Math.max(capacity, timestamps.length * 2);
+            timestamps = Arrays.copyOf(timestamps, newCapacity);
+            values = Arrays.copyOf(values, newCapacity);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    public double getValue(int index) {
+        return values[index];
+    }
+
+    // True if both series hold bit-for-bit the same estimates
+    public boolean contentEquals(EstimateSeries other) {
+        if (size != other.size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (Double.doubleToLongBits(timestamps[i]) != Double.doubleToLongBits(other.timestamps[i])
+                    || Double.doubleToLongBits(values[i]) != Double.doubleToLongBits(other.values[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,75 @@
+package com.empatica.sample;
+
+public class HeartRateCalculator implements BvpPipeline.Estimator {
+    private float heartRate = 0.0f;
+    private float quality = 0.0f; // Signal quality of the window the heart rate came from
+    private boolean ready = false;
+
+    // Constants for signal processing
+    private static final int BUFFER_SIZE = 512; // Increased buffer size for better accuracy
+
+    @Override
+    public int getWindowSize() {
+        return BUFFER_SIZE;
+    }
+
+    // Consecutive heart rate windows do not overlap
+    @Override
+    public int getWindowHop() {
+        return BUFFER_SIZE;
+    }
+
+    // Receives a filtered BVP window from the pipeline and calculates heart rate from its peaks.
+    @Override
+    public void onWindow(BvpWindow window) {
+        if (!window.isUsable()) {
+            // Motion or poor contact: keep the previous reading instead of reporting garbage
+            Diagnostics.count("heart_rate.skipped_windows", 1);
+            return;
+        }
+        heartRate = calculateHeartRateFromPeaks(window);
+        quality = (float) window.getQuality();
+        Diagnostics.record("heart_rate.bpm", heartRate);
+        ready = true;
+    }
+
+    private float calculateHeartRateFromPeaks(BvpWindow window) {
+        // Every detected peak is a beat; the detector's adaptive threshold and refractory
+        // interval already reject noise and dicrotic notches
+        int[] peaks = window.getPeaks();
+        int beatCount = window.getPeakCount();
+        int firstBeat = beatCount > 0 ? peaks[0] : 0;
+        int lastBeat = beatCount > 0 ? peaks[beatCount - 1] : 0;
+
+        if (beatCount < 2) {
+            Diagnostics.d("HeartRateCalculator", "Not enough peaks to calculate heart rate");
+            return 0.0f; // Not enough peaks to calculate heart rate
+        }
+
+        // The sum of consecutive differences telescopes to last - first
+        float avgDiff = (float) (lastBeat - firstBeat) / (beatCount - 1);
+
+        if (avgDiff == 0.0f) {
+            Diagnostics.d("HeartRateCalculator", "Average Difference is zero, cannot calculate heart rate");
+            return 0.0f; // Avoid division by zero
+        }
+
+        return (float) (window.getSamplingRate() * 60 / avgDiff); // Return heart rate in beats per minute
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+
+    // Signal quality of the window behind the current heart rate, between 0 and 1
+    public float getQuality() {
+        return quality;
+    }
+
+    //Retrieves the calculated heart rate.
+    public float getHeartRate() {
+        ready = false; // Reset the ready flag after reading the heart rate
+        return heartRate;
+    }
+}
@@ -0,0 +1,251 @@
+package com.empatica.sample;
+
+/**
+ * Beat-to-beat heart rate and heart rate variability from the inter-beat intervals (IBIs)
+ * reported by the E4.
+ *
+ * Accepted beats are kept in a ring of primitive timestamps and intervals. Each configured
+ * {@link Window} keeps running sums over the beats of its last N seconds, so adding a beat
+ * updates RMSSD, SDNN and pNN50 in O(1) amortized: the new beat is added to the sums and the beats
+ * that fell out of the window are subtracted again. The E4 leaves out intervals it could not
+ * detect reliably, so a successive difference only counts when two intervals are adjacent, that
+ * is when the later beat follows the earlier one by its own interval. Not thread-safe.
+ */
+public class HrvEngine {
+
+    // Physiologically plausible intervals, 30 to 240 beats per minute
+    private static final double MIN_IBI = 0.25;
+    private static final double MAX_IBI = 2.0;
+    // Beats are adjacent if the gap between them matches the later interval within this tolerance
+    private static final double ADJACENCY_TOLERANCE = 0.05;
+    // Closest two accepted beats can be, which bounds the beats a window holds
+    private static final double MIN_BEAT_SPACING = MIN_IBI - ADJACENCY_TOLERANCE;
+    // Successive difference counted by pNN50, in seconds
+    private static final double NN50_THRESHOLD = 0.05;
+    // Beats between two exact recomputations of a window's sums, to discard rounding error
+    private static final int RESYNC_INTERVAL = 4096;
+
+    private final double[] timestamps;
+    private final double[] intervals;
+    // Successive difference to the previous beat, NaN when the two beats are not adjacent
+    private final double[] differences;
+    private final Window[] windows;
+    private long beatCount = 0; // Beats accepted so far; beat b lives in slot b % capacity
+    private long rejectedCount = 0;
+    private double heartRate = 0.0;
+
+    /**
+     * @param windowSeconds one or more window lengths the HRV metrics are maintained over,
+     *                      for example 60 for short-term and 300 for standard 5 minute HRV
+     */
+    public HrvEngine(double... windowSeconds) {
+        if (windowSeconds.length == 0) {
+            throw new IllegalArgumentException("At least one window is required");
+        }
+        double longest = 0.0;
+        windows = new Window[windowSeconds.length];
+        for (int i = 0; i < windowSeconds.length; i++) {
+            if (!(windowSeconds[i] > 0.0)) {
+                throw new IllegalArgumentException("Window must be positive: " + windowSeconds[i]);
+            }
+            windows[i] = new Window(windowSeconds[i]);
+            longest = Math.max(longest, windowSeconds[i]);
+        }
+        // Enough slots for the longest window at the closest beat spacing, plus the beat being added
+        int capacity = (int) Math.ceil(longest / MIN_BEAT_SPACING) + 2;
+        timestamps = new double[capacity];
+        intervals = new double[capacity];
+        differences = new double[capacity];
+    }
+
+    /**
+     * Adds one beat as reported by {@code EmpaDataDelegate.didReceiveIBI}.
+     *
+     * @param timestamp time of the beat in seconds
+     * @param ibi       interval to the previous beat in seconds
+     * @return false if the interval was rejected as implausible or too close to the previous beat
+     */
+    public boolean add(double timestamp, double ibi) {
+        if (!(ibi >= MIN_IBI && ibi <= MAX_IBI)
+                || (beatCount > 0 && timestamp - timestamps[slot(beatCount - 1)] < MIN_BEAT_SPACING)) {
+            rejectedCount++;
+            return false;
+        }
+        double difference = Double.NaN;
+        if (beatCount > 0) {
+            int previous = slot(beatCount - 1);
+            if (Math.abs(timestamp - timestamps[previous] - ibi) <= ADJACENCY_TOLERANCE) {
+                difference = ibi - intervals[previous];
+            }
+        }
+        int slot = slot(beatCount);
+        timestamps[slot] = timestamp;
+        intervals[slot] = ibi;
+        differences[slot] = difference;
+        beatCount++;
+        heartRate = 60.0 / ibi;
+
+        for (Window window : windows) {
+            window.add(slot, timestamp);
+        }
+        return true;
+    }
+
+    private int slot(long beat) {
+        return (int) (beat % timestamps.length);
+    }
+
+    // Heart rate of the last accepted beat in beats per minute, 0 before the first one
+    public double getHeartRate() {
+        return heartRate;
+    }
+
+    public long getBeatCount() {
+        return beatCount;
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    public int getWindowCount() {
+        return windows.length;
+    }
+
+    // Window i, in the order given to the constructor
+    public Window getWindow(int i) {
+        return windows[i];
+    }
+
+    public void clear() {
+        beatCount = 0;
+        rejectedCount = 0;
+        heartRate = 0.0;
+        for (Window window : windows) {
+            window.clear();
+        }
+    }
+
+    /**
+     * HRV metrics over the beats of the last {@link #getSeconds()} seconds. Intervals are summed
+     * relative to the first one seen, which keeps the variance sums well conditioned.
+     */
+    public class Window {
+        private final double seconds;
+        private long first = 0; // Oldest beat in the window
+        private int count = 0;
+        private double offset = Double.NaN;
+        private double sum = 0.0;
+        private double sumOfSquares = 0.0;
+        private int differenceCount = 0;
+        private double differenceSumOfSquares = 0.0;
+        private int nn50Count = 0;
+        private int beatsSinceResync = 0;
+
+        Window(double seconds) {
+            this.seconds = seconds;
+        }
+
+        void add(int slot, double timestamp) {
+            if (Double.isNaN(offset)) {
+                offset = intervals[slot];
+            }
+            includeInterval(slot, 1);
+            includeDifference(slot, 1);
+            count++;
+            while (count > 1 && timestamps[slot(first)] <= timestamp - seconds) {
+                evict();
+            }
+            if (++beatsSinceResync >= RESYNC_INTERVAL) {
+                resync();
+            }
+        }
+
+        private void evict() {
+            includeInterval(slot(first), -1);
+            first++;
+            count--;
+            // The oldest beat's difference refers to a beat outside the window
+            includeDifference(slot(first), -1);
+        }
+
+        // Adds (sign 1) or removes (sign -1) one beat's interval from the sums
+        private void includeInterval(int slot, int sign) {
+            double centered = intervals[slot] - offset;
+            sum += sign * centered;
+            sumOfSquares += sign * centered * centered;
+        }
+
+        private void includeDifference(int slot, int sign) {
+            double difference = differences[slot];
+            if (!Double.isNaN(difference)) {
+                differenceCount += sign;
+                differenceSumOfSquares += sign * difference * difference;
+                if (Math.abs(difference) > NN50_THRESHOLD) {
+                    nn50Count += sign;
+                }
+            }
+        }
+
+        // Recomputes the sums from the retained beats
+        private void resync() {
+            beatsSinceResync = 0;
+            offset = intervals[slot(first)];
+            sum = 0.0;
+            sumOfSquares = 0.0;
+            differenceCount = 0;
+            differenceSumOfSquares = 0.0;
+            nn50Count = 0;
+            for (long beat = first; beat < first + count; beat++) {
+                int slot = slot(beat);
+                includeInterval(slot, 1);
+                if (beat > first) {
+                    includeDifference(slot, 1);
+                }
+            }
+        }
+
+        void clear() {
+            first = 0;
+            count = 0;
+            offset = Double.NaN;
+            sum = 0.0;
+            sumOfSquares = 0.0;
+            differenceCount = 0;
+            differenceSumOfSquares = 0.0;
+            nn50Count = 0;
+            beatsSinceResync = 0;
+        }
+
+        public double getSeconds() {
+            return seconds;
+        }
+
+        // Beats in the window
+        public int getBeatCount() {
+            return count;
+        }
+
+        // Mean heart rate over the window in beats per minute, 0 if empty
+        public double getMeanHeartRate() {
+            return count == 0 ? 0.0 : 60.0 / (offset + sum / count);
+        }
+
+        // Root mean square of successive differences in milliseconds, 0 without adjacent beats
+        public double getRmssd() {
+            return differenceCount == 0 ? 0.0 : 1000.0 * Math.sqrt(differenceSumOfSquares / differenceCount);
+        }
+
+        // Sample standard deviation of the intervals in milliseconds, 0 with fewer than two beats
+        public double getSdnn() {
+            if (count < 2) return 0.0;
+            double variance = (sumOfSquares - sum * sum / count) / (count - 1);
+            return 1000.0 * Math.sqrt(Math.max(variance, 0.0));
+        }
+
+        // Percentage of successive differences larger than 50 ms, 0 without adjacent beats
+        public double getPnn50() {
+            return differenceCount == 0 ? 0.0 : 100.0 * nn50Count / differenceCount;
+        }
+    }
+}
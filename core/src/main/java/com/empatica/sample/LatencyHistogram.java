@@ -0,0 +1,123 @@
+package com.empatica.sample;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations in nanoseconds, laid out like an HdrHistogram with five
+ * significant bits: values below 64 ns get a bucket each, and every power of two above is split
+ * into 32 buckets, so a percentile is off by at most 1/32 (about 3 %) of its value. The buckets
+ * cover up to about 18 minutes; longer durations fall into the last bucket, but the maximum is
+ * kept exactly.
+ *
+ * {@link #record(long)} is safe from any number of threads and never allocates or blocks. Reads
+ * may run concurrently with recording and then see a few samples in the count but not yet in a
+ * bucket, which is fine for monitoring.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Values up to 2^40 ns are bucketed; the top bucket index is 34 * 32 + 63
+    private static final int MAX_VALUE_BITS = 40;
+    private static final long MAX_BUCKETED_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    private static final int BUCKET_COUNT = bucketIndex(MAX_BUCKETED_VALUE) + 1;
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // Records one duration; negative values, e.g. from clock adjustments, count as 0
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        buckets.incrementAndGet(bucketIndex(Math.min(value, MAX_BUCKETED_VALUE)));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    // Records the time elapsed since startNanos and returns now, the start of the next stage
+    public long recordSince(long startNanos) {
+        long now = System.nanoTime();
+        record(now - startNanos);
+        return now;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    // Mean duration in nanoseconds, NaN before the first record
+    public double getMean() {
+        long n = count.get();
+        return n > 0 ? (double) sum.get() / n : Double.NaN;
+    }
+
+    /**
+     * Smallest recorded duration such that the given percentage (0 to 100) of records are at most
+     * that long, rounded up to the end of its bucket and capped at the maximum. 0 if empty.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += buckets.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets.get(i);
+            if (seen >= target) {
+                return Math.min(bucketUpperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    // Clears all records; records running concurrently may survive partially
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    // Values below 2 * SUB_BUCKETS map to themselves; above, the top SUB_BUCKET_BITS + 1 bits select the bucket
+    private static int bucketIndex(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    private static long bucketUpperBound(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long top = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((top + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,67 @@
+package com.empatica.sample;
+
+/**
+ * Fixed-capacity ring of detected events: the stream index of each event and the signal value
+ * there, in primitive arrays. Once full, each new event overwrites the oldest one.
+ */
+public class PeakEventRing {
+
+    private final long[] indices;
+    private final double[] values;
+    private int head = 0; // Next write position
+    private int size = 0;
+    private long totalEvents = 0;
+
+    public PeakEventRing(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        indices = new long[capacity];
+        values = new double[capacity];
+    }
+
+    public void add(long index, double value) {
+        indices[head] = index;
+        values[head] = value;
+        head = head + 1 == indices.length ? 0 : head + 1;
+        if (size < indices.length) {
+            size++;
+        }
+        totalEvents++;
+    }
+
+    // Stream index of the i-th retained event, 0 being the oldest
+    public long getIndex(int i) {
+        return indices[slot(i)];
+    }
+
+    public double getValue(int i) {
+        return values[slot(i)];
+    }
+
+    private int slot(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index " + i + ", size " + size);
+        }
+        int slot = head - size + i;
+        return slot < 0 ? slot + indices.length : slot;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return indices.length;
+    }
+
+    // Events added since creation, including those already overwritten
+    public long getTotalEvents() {
+        return totalEvents;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+}
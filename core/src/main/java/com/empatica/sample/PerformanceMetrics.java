@@ -0,0 +1,212 @@
+package com.empatica.sample;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide registry of the latency histograms, counters and gauges that show where the
+ * sensor-to-screen path spends its time. Unlike {@link Diagnostics}, which forwards every event
+ * to a sink by name, the hot path holds on to the {@link LatencyHistogram} or {@link AtomicLong}
+ * it looked up once, at construction or subscription, and updates it without locks, lookups or
+ * allocation.
+ *
+ * Names describe a stage, e.g. {@code window.fill}. Metrics updated for every sample of a device
+ * are kept per device, named {@code device.<name>.<channel>.<what>}, so devices never contend
+ * for one, and are {@link #remove(String) removed} when the device's session closes. {@link #toJson()} dumps
+ * everything, together with the allocation statistics of the installed
+ * {@link AllocationSource}.
+ */
+public final class PerformanceMetrics {
+
+    // Percentiles reported for each histogram
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+
+    public interface AllocationSource {
+        // Bytes allocated by the process so far, or -1 if unknown
+        long getAllocatedBytes();
+
+        // Garbage collections run so far, or -1 if unknown
+        long getGcCount();
+    }
+
+    // Latest value of a sampled quantity, such as a sample rate
+    public static final class Gauge {
+        private volatile double value = Double.NaN;
+
+        public void set(double value) {
+            this.value = value;
+        }
+
+        public double get() {
+            return value;
+        }
+    }
+
+    private static final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private static volatile AllocationSource allocationSource;
+
+    private PerformanceMetrics() {
+    }
+
+    // The histogram of the given stage, created on first use; look it up once, not per sample
+    public static LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram(name);
+            histogram = histograms.putIfAbsent(name, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    // The counter of the given name, created on first use; look it up once, not per sample
+    public static AtomicLong counter(String name) {
+        AtomicLong counter = counters.get(name);
+        if (counter == null) {
+            AtomicLong created = new AtomicLong();
+            counter = counters.putIfAbsent(name, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    public static Gauge gauge(String name) {
+        Gauge gauge = gauges.get(name);
+        if (gauge == null) {
+            Gauge created = new Gauge();
+            gauge = gauges.putIfAbsent(name, created);
+            if (gauge == null) {
+                gauge = created;
+            }
+        }
+        return gauge;
+    }
+
+    // Forgets every metric whose name starts with the prefix, e.g. those of a closed device
+    public static void remove(String prefix) {
+        histograms.keySet().removeIf(name -> name.startsWith(prefix));
+        counters.keySet().removeIf(name -> name.startsWith(prefix));
+        gauges.keySet().removeIf(name -> name.startsWith(prefix));
+    }
+
+    // Zeroes all metrics in place, so references held by the processing code stay valid
+    public static void reset() {
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+        for (AtomicLong counter : counters.values()) {
+            counter.set(0);
+        }
+        for (Gauge gauge : gauges.values()) {
+            gauge.set(Double.NaN);
+        }
+    }
+
+    // Installs the platform's allocation statistics; null removes them from the dump
+    public static void setAllocationSource(AllocationSource source) {
+        allocationSource = source;
+    }
+
+    public static AllocationSource getAllocationSource() {
+        return allocationSource;
+    }
+
+    // Snapshots sorted by name, for display
+    public static SortedMap<String, LatencyHistogram> getHistograms() {
+        return new TreeMap<>(histograms);
+    }
+
+    public static SortedMap<String, AtomicLong> getCounters() {
+        return new TreeMap<>(counters);
+    }
+
+    public static SortedMap<String, Gauge> getGauges() {
+        return new TreeMap<>(gauges);
+    }
+
+    /**
+     * All metrics as one JSON object: the wall-clock time of the dump, allocation statistics if a
+     * source is installed, counters, gauges, and for every histogram its count, mean, percentiles
+     * and maximum in nanoseconds.
+     */
+    public static String toJson() {
+        StringBuilder json = new StringBuilder(4096);
+        json.append("{\n  \"timestamp_ms\": ").append(System.currentTimeMillis());
+
+        AllocationSource source = allocationSource;
+        if (source != null) {
+            json.append(",\n  \"allocation\": {\"bytes\": ").append(source.getAllocatedBytes())
+                    .append(", \"gc_count\": ").append(source.getGcCount()).append('}');
+        }
+
+        json.append(",\n  \"counters\": {");
+        String separator = "\n    ";
+        for (Map.Entry<String, AtomicLong> entry : getCounters().entrySet()) {
+            json.append(separator);
+            appendString(json, entry.getKey());
+            json.append(": ").append(entry.getValue().get());
+            separator = ",\n    ";
+        }
+        json.append("\n  },\n  \"gauges\": {");
+        separator = "\n    ";
+        for (Map.Entry<String, Gauge> entry : getGauges().entrySet()) {
+            json.append(separator);
+            appendString(json, entry.getKey());
+            double value = entry.getValue().get();
+            // JSON has no NaN
+            json.append(": ").append(Double.isNaN(value) ? "null" : String.format(Locale.US, "%.3f", value));
+            separator = ",\n    ";
+        }
+        json.append("\n  },\n  \"histograms\": {");
+        separator = "\n    ";
+        for (Map.Entry<String, LatencyHistogram> entry : getHistograms().entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            json.append(separator);
+            appendString(json, entry.getKey());
+            long count = histogram.getCount();
+            json.append(": {\"count\": ").append(count)
+                    .append(", \"mean_ns\": ").append(count > 0 ? Math.round(histogram.getMean()) : 0);
+            for (double percentile : PERCENTILES) {
+                json.append(", \"p").append(percentileLabel(percentile)).append("_ns\": ")
+                        .append(histogram.getValueAtPercentile(percentile));
+            }
+            json.append(", \"max_ns\": ").append(histogram.getMax()).append('}');
+            separator = ",\n    ";
+        }
+        json.append("\n  }\n}\n");
+        return json.toString();
+    }
+
+    // 50 -> "50", 99.9 -> "999"
+    private static String percentileLabel(double percentile) {
+        return percentile == Math.rint(percentile)
+                ? Long.toString((long) percentile)
+                : Double.toString(percentile).replace(".", "");
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+}
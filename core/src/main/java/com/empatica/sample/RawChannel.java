@@ -0,0 +1,53 @@
+package com.empatica.sample;
+
+/**
+ * Raw Empatica E4 streams that can be recorded to disk, with their on-disk identifiers.
+ */
+public enum RawChannel {
+    BVP(1, "bvp", 1, 64.0),
+    ACCELERATION(2, "acc", 3, 32.0),
+    EDA(3, "eda", 1, 4.0),
+    TEMPERATURE(4, "temp", 1, 4.0),
+    // Inter-beat intervals arrive once per detected beat, not at a fixed rate
+    IBI(5, "ibi", 1, 0.0);
+
+    private final int id;
+    private final String fileName;
+    private final int valuesPerSample;
+    private final double nominalRate;
+
+    RawChannel(int id, String fileName, int valuesPerSample, double nominalRate) {
+        this.id = id;
+        this.fileName = fileName;
+        this.valuesPerSample = valuesPerSample;
+        this.nominalRate = nominalRate;
+    }
+
+    // Identifier stored in segment headers; never renumber
+    public int getId() {
+        return id;
+    }
+
+    // Prefix of the channel's segment files inside a session directory
+    public String getFileName() {
+        return fileName;
+    }
+
+    public int getValuesPerSample() {
+        return valuesPerSample;
+    }
+
+    // Sampling rate in Hz, or 0 for event streams
+    public double getNominalRate() {
+        return nominalRate;
+    }
+
+    public static RawChannel fromId(int id) {
+        for (RawChannel channel : values()) {
+            if (channel.id == id) {
+                return channel;
+            }
+        }
+        throw new IllegalArgumentException("Unknown raw channel id " + id);
+    }
+}
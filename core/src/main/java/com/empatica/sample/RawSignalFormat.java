@@ -0,0 +1,42 @@
+package com.empatica.sample;
+
+import java.util.Locale;
+
+/**
+ * Layout of the append-only raw signal segment files.
+ *
+ * A channel is recorded as a sequence of segment files named
+ * {@code <channel>-<sequence>.e4r}. All values are little-endian. Each segment starts with a
+ * fixed {@link #HEADER_SIZE}-byte header:
+ * <pre>
+ *  0  int    magic ("E4RS")
+ *  4  short  format version
+ *  6  byte   channel id, see {@link RawChannel#getId()}
+ *  7  byte   values per sample
+ *  8  double base timestamp, seconds since the epoch
+ * 16  int    number of complete records in the segment
+ * 20  12 reserved bytes
+ * </pre>
+ * followed by fixed-width records: an {@code int} timestamp delta in microseconds from the
+ * previous record (from the base timestamp for the first one), then one {@code float} per value.
+ */
+final class RawSignalFormat {
+
+    static final int MAGIC = 0x53523445; // "E4RS" read as little-endian bytes
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_COUNT_OFFSET = 16;
+    static final String SEGMENT_SUFFIX = ".e4r";
+    static final double MICROS_PER_SECOND = 1000000.0;
+
+    private RawSignalFormat() {
+    }
+
+    static int recordSize(RawChannel channel) {
+        return 4 + 4 * channel.getValuesPerSample();
+    }
+
+    static String segmentName(RawChannel channel, int sequence) {
+        return channel.getFileName() + "-" + String.format(Locale.US, "%05d", sequence) + SEGMENT_SUFFIX;
+    }
+}
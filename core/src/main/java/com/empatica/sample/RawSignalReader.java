@@ -0,0 +1,174 @@
+package com.empatica.sample;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import okio.BufferedSource;
+import okio.Okio;
+
+/**
+ * Reads back the segments written by {@link RawSignalWriter} for one channel, oldest first.
+ *
+ * Segments are streamed through a buffered Okio source, one at a time, so memory use does not
+ * depend on the recording length. Call {@link #next()} to advance, then read the current
+ * record through {@link #getTimestamp()} and {@link #getValue(int)}. A segment whose header
+ * claims more records than the file holds (after a crash) is read up to its last full record.
+ * {@link #seek(double)} uses the segment headers to skip whole segments without reading them.
+ */
+public class RawSignalReader implements Closeable {
+
+    private final List<File> segments;
+    private final RawChannel channel;
+    private final float[] values;
+    private int segmentIndex = 0;
+    private BufferedSource source;
+    private int remainingRecords = 0;
+    private double baseTimestamp;
+    private long offsetMicros;
+    private double timestamp;
+    private boolean pending = false;
+
+    public RawSignalReader(List<File> segments, RawChannel channel) {
+        this.segments = segments;
+        this.channel = channel;
+        this.values = new float[channel.getValuesPerSample()];
+    }
+
+    // Opens a reader over all recorded segments of one channel of a session
+    public static RawSignalReader open(File sessionDirectory, RawChannel channel) {
+        return new RawSignalReader(listSegments(sessionDirectory, channel), channel);
+    }
+
+    // Segment files of one channel, in recording order
+    public static List<File> listSegments(File sessionDirectory, RawChannel channel) {
+        String prefix = channel.getFileName() + "-";
+        File[] files = sessionDirectory.listFiles((dir, name) ->
+                name.startsWith(prefix) && name.endsWith(RawSignalFormat.SEGMENT_SUFFIX));
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        // Sequence numbers are zero-padded, so name order is recording order
+        Arrays.sort(files);
+        return new ArrayList<>(Arrays.asList(files));
+    }
+
+    // Advances to the next record; returns false at the end of the recording
+    public boolean next() throws IOException {
+        if (pending) {
+            // Record already read by seek()
+            pending = false;
+            return true;
+        }
+        while (remainingRecords == 0 || !source.request(RawSignalFormat.recordSize(channel))) {
+            if (!openNextSegment()) {
+                return false;
+            }
+        }
+        offsetMicros += source.readIntLe();
+        timestamp = baseTimestamp + offsetMicros / RawSignalFormat.MICROS_PER_SECOND;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Float.intBitsToFloat(source.readIntLe());
+        }
+        remainingRecords--;
+        return true;
+    }
+
+    /**
+     * Positions the reader so that the next call to {@link #next()} returns the first record at or
+     * after the timestamp, which may be before the current position.
+     *
+     * @return false if the recording ends before the timestamp
+     */
+    public boolean seek(double target) throws IOException {
+        closeSource();
+        pending = false;
+        remainingRecords = 0;
+        // Start from the last segment that begins at or before the target
+        segmentIndex = 0;
+        for (int i = 1; i < segments.size(); i++) {
+            double base = readBaseTimestamp(segments.get(i));
+            if (Double.isNaN(base) || base > target) {
+                break;
+            }
+            segmentIndex = i;
+        }
+        while (next()) {
+            if (timestamp >= target) {
+                pending = true;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Base timestamp from a segment header, or NaN if the header is incomplete
+    private static double readBaseTimestamp(File segment) throws IOException {
+        try (BufferedSource header = Okio.buffer(Okio.source(segment))) {
+            if (!header.request(RawSignalFormat.HEADER_SIZE)) {
+                return Double.NaN;
+            }
+            header.skip(RawSignalFormat.RECORD_COUNT_OFFSET - 8);
+            return Double.longBitsToDouble(header.readLongLe());
+        }
+    }
+
+    private boolean openNextSegment() throws IOException {
+        closeSource();
+        if (segmentIndex >= segments.size()) {
+            return false;
+        }
+        File segment = segments.get(segmentIndex++);
+        source = Okio.buffer(Okio.source(segment));
+        if (!source.request(RawSignalFormat.HEADER_SIZE)) {
+            // Empty or truncated header, nothing to read in this segment
+            remainingRecords = 0;
+            return true;
+        }
+        int magic = source.readIntLe();
+        short version = source.readShortLe();
+        int channelId = source.readByte();
+        int valuesPerSample = source.readByte();
+        if (magic != RawSignalFormat.MAGIC || version != RawSignalFormat.VERSION
+                || channelId != channel.getId() || valuesPerSample != values.length) {
+            throw new IOException("Not a " + channel + " segment: " + segment);
+        }
+        baseTimestamp = Double.longBitsToDouble(source.readLongLe());
+        remainingRecords = source.readIntLe();
+        source.skip(RawSignalFormat.HEADER_SIZE - RawSignalFormat.RECORD_COUNT_OFFSET - 4);
+        offsetMicros = 0;
+        return true;
+    }
+
+    // Timestamp of the current record, in seconds since the epoch
+    public double getTimestamp() {
+        return timestamp;
+    }
+
+    // Value of the current record; index 0..2 for acceleration x, y, z
+    public float getValue(int index) {
+        return values[index];
+    }
+
+    public RawChannel getChannel() {
+        return channel;
+    }
+
+    private void closeSource() throws IOException {
+        if (source != null) {
+            source.close();
+            source = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeSource();
+        segmentIndex = segments.size();
+        remainingRecords = 0;
+        pending = false;
+    }
+}
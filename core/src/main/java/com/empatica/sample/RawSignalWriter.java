@@ -0,0 +1,153 @@
+package com.empatica.sample;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Appends samples of one {@link RawChannel} to memory-mapped segment files.
+ *
+ * Each segment is mapped once at its full size, so an append is a few buffer puts with no
+ * system call and no allocation. A new segment is started when the current one is full, when
+ * the timestamp delta does not fit in an {@code int} of microseconds, or when time goes
+ * backwards. The record count in the header is updated after every record, so a crash loses at
+ * most the record being written. Closing truncates the last segment to its used length.
+ */
+public class RawSignalWriter implements Closeable {
+
+    private final File directory;
+    private final RawChannel channel;
+    private final int segmentBytes;
+    private final int recordSize;
+
+    private RandomAccessFile file;
+    private FileChannel fileChannel;
+    private MappedByteBuffer buffer;
+    private int sequence = 0;
+    private int segmentRecords = 0;
+    private double baseTimestamp;
+    private long lastOffsetMicros;
+    private long totalRecords = 0;
+    private long totalBytes = 0;
+    private boolean closed = false;
+
+    public RawSignalWriter(File directory, RawChannel channel, int segmentBytes) {
+        if (segmentBytes < RawSignalFormat.HEADER_SIZE + RawSignalFormat.recordSize(channel)) {
+            throw new IllegalArgumentException("Segment too small: " + segmentBytes);
+        }
+        this.directory = directory;
+        this.channel = channel;
+        this.segmentBytes = segmentBytes;
+        this.recordSize = RawSignalFormat.recordSize(channel);
+    }
+
+    public synchronized void append(double timestamp, float value) throws IOException {
+        checkWidth(1);
+        beginRecord(timestamp);
+        buffer.putFloat(value);
+        endRecord();
+    }
+
+    public synchronized void append(double timestamp, float x, float y, float z) throws IOException {
+        checkWidth(3);
+        beginRecord(timestamp);
+        buffer.putFloat(x);
+        buffer.putFloat(y);
+        buffer.putFloat(z);
+        endRecord();
+    }
+
+    private void checkWidth(int values) {
+        if (channel.getValuesPerSample() != values) {
+            throw new IllegalArgumentException(channel + " samples have " + channel.getValuesPerSample() + " values");
+        }
+    }
+
+    // Rolls over if needed and writes the timestamp delta of the next record
+    private void beginRecord(double timestamp) throws IOException {
+        if (closed) {
+            throw new IOException(channel + " writer is closed");
+        }
+        long offsetMicros = 0;
+        long delta = 0;
+        if (buffer != null) {
+            offsetMicros = Math.round((timestamp - baseTimestamp) * RawSignalFormat.MICROS_PER_SECOND);
+            delta = offsetMicros - lastOffsetMicros;
+        }
+        if (buffer == null || buffer.remaining() < recordSize || delta < 0 || delta > Integer.MAX_VALUE) {
+            startSegment(timestamp);
+            offsetMicros = 0;
+            delta = 0;
+        }
+        buffer.putInt((int) delta);
+        lastOffsetMicros = offsetMicros;
+    }
+
+    private void endRecord() {
+        segmentRecords++;
+        totalRecords++;
+        totalBytes += recordSize;
+        buffer.putInt(RawSignalFormat.RECORD_COUNT_OFFSET, segmentRecords);
+    }
+
+    private void startSegment(double timestamp) throws IOException {
+        closeSegment();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        file = new RandomAccessFile(new File(directory, RawSignalFormat.segmentName(channel, sequence++)), "rw");
+        fileChannel = file.getChannel();
+        buffer = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putInt(RawSignalFormat.MAGIC);
+        buffer.putShort(RawSignalFormat.VERSION);
+        buffer.put((byte) channel.getId());
+        buffer.put((byte) channel.getValuesPerSample());
+        buffer.putDouble(timestamp);
+        buffer.putInt(0); // Record count
+        buffer.position(RawSignalFormat.HEADER_SIZE);
+        totalBytes += RawSignalFormat.HEADER_SIZE;
+
+        baseTimestamp = timestamp;
+        segmentRecords = 0;
+    }
+
+    // Drops the unused tail of the mapped segment
+    private void closeSegment() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        int used = buffer.position();
+        buffer.force();
+        buffer = null;
+        fileChannel.truncate(used);
+        fileChannel.close();
+        file.close();
+        fileChannel = null;
+        file = null;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        closeSegment();
+    }
+
+    public RawChannel getChannel() {
+        return channel;
+    }
+
+    public synchronized long getRecordCount() {
+        return totalRecords;
+    }
+
+    // Bytes of headers and records written so far
+    public synchronized long getBytesWritten() {
+        return totalBytes;
+    }
+}
@@ -0,0 +1,45 @@
+package com.empatica.sample;
+
+/**
+ * Estimates produced for one recorded BVP stream, one entry per estimator window, in the order
+ * the streaming pipeline would have produced them.
+ */
+public class ReprocessedSession {
+
+    private final EstimateSeries heartRate = new EstimateSeries();
+    private final EstimateSeries respiratoryRate = new EstimateSeries();
+    private final EstimateSeries systolicBloodPressure = new EstimateSeries();
+    private final EstimateSeries diastolicBloodPressure = new EstimateSeries();
+
+    // Appends the estimates of the directly following part of the same stream
+    void append(ReprocessedSession next) {
+        heartRate.addAll(next.heartRate);
+        respiratoryRate.addAll(next.respiratoryRate);
+        systolicBloodPressure.addAll(next.systolicBloodPressure);
+        diastolicBloodPressure.addAll(next.diastolicBloodPressure);
+    }
+
+    public EstimateSeries getHeartRate() {
+        return heartRate;
+    }
+
+    public EstimateSeries getRespiratoryRate() {
+        return respiratoryRate;
+    }
+
+    public EstimateSeries getSystolicBloodPressure() {
+        return systolicBloodPressure;
+    }
+
+    public EstimateSeries getDiastolicBloodPressure() {
+        return diastolicBloodPressure;
+    }
+
+    // True if every series matches the other session bit for bit
+    public boolean contentEquals(ReprocessedSession other) {
+        return heartRate.contentEquals(other.heartRate)
+                && respiratoryRate.contentEquals(other.respiratoryRate)
+                && systolicBloodPressure.contentEquals(other.systolicBloodPressure)
+                && diastolicBloodPressure.contentEquals(other.diastolicBloodPressure);
+    }
+}
@@ -0,0 +1,211 @@
+package com.empatica.sample;
+
+public class RespiratoryRateCalculator implements BvpPipeline.Estimator {
+
+    public enum Method {
+        // Weighted sum of amplitude, baseline and frequency modulation and a breath count
+        FEATURE_FUSION,
+        // Dominant frequency of the windowed respiratory band spectrum
+        SPECTRAL
+    }
+
+    // Window size, here 1280 samples (64 samples per second for 20 seconds)
+    private static final int BUFFER_SIZE = 64 * 20;
+    // Recompute after half a window of new samples so consecutive windows overlap by 50%
+    private static final int WINDOW_HOP = BUFFER_SIZE / 2;
+    // Breathing band searched by the spectral method, 6 to 30 breaths per minute
+    private static final double MIN_BREATH_HZ = 0.1;
+    private static final double MAX_BREATH_HZ = 0.5;
+    // Zero-pad the 20 s window to 4096 points, a 0.94 breaths-per-minute bin grid
+    private static final int SPECTRAL_PADDING = 2;
+
+    private final Method method;
+    private final SpectralPeakEstimator spectralEstimator;
+    private float respiratoryRate = 0.0f;
+    private float quality = 0.0f; // Signal quality of the window the rate came from
+    private boolean ready = false;
+    // Raw window of the current calculation, read by the peak percentile
+    private double[] bvpDataBuffer;
+    // Peak values reordered by the percentile, sized for the most peaks a window can hold
+    private final double[] percentileScratch = new double[BUFFER_SIZE / 2 + 1];
+
+    // Constants for signal processing
+    private static final double SAMPLING_RATE = BvpPipeline.SAMPLING_RATE;
+
+    public RespiratoryRateCalculator() {
+        this(Method.FEATURE_FUSION);
+    }
+
+    public RespiratoryRateCalculator(Method method) {
+        this.method = method;
+        this.spectralEstimator = method == Method.SPECTRAL
+                ? new SpectralPeakEstimator(BUFFER_SIZE, SPECTRAL_PADDING)
+                : null;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    @Override
+    public int getWindowSize() {
+        return BUFFER_SIZE;
+    }
+
+    @Override
+    public int getWindowHop() {
+        return WINDOW_HOP;
+    }
+
+    // Receives a band-passed BVP window from the pipeline
+    @Override
+    public void onWindow(BvpWindow window) {
+        if (!window.isUsable()) {
+            // Motion or poor contact: keep the previous reading instead of reporting garbage
+            Diagnostics.count("respiratory_rate.skipped_windows", 1);
+            return;
+        }
+        calculateRespiratoryRate(window);
+        quality = (float) window.getQuality();
+        ready = true;
+    }
+
+    // Method to calculate the respiratory rate from the shared BVP window
+    private void calculateRespiratoryRate(BvpWindow window) {
+        try {
+            if (method == Method.SPECTRAL) {
+                // The pipeline's band-pass keeps the breathing band, the spectrum picks it out
+                double breathHz = spectralEstimator.estimate(window.getFiltered(), window.getLength(),
+                        window.getSamplingRate(), MIN_BREATH_HZ, MAX_BREATH_HZ);
+                respiratoryRate = (float) (breathHz * 60.0);
+                Diagnostics.record("respiratory_rate.brpm", respiratoryRate);
+                return;
+            }
+            bvpDataBuffer = window.getRaw();
+            double[] filteredData = window.getFiltered();
+
+            // The pipeline's detector already applies the amplitude threshold and refractory interval
+            int[] peaks = window.getPeaks();
+            int peakCount = window.getPeakCount();
+            int[] troughs = window.getTroughs();
+            int troughCount = window.getTroughCount();
+
+            // Feature extraction
+            double am = calculateAmplitudeModulation(filteredData, peaks, peakCount, troughs, troughCount);
+            double bw = calculateBaselineWander(filteredData, peaks, peakCount, troughs, troughCount);
+            double fm = calculateFrequencyModulation(peaks, peakCount);
+
+            Diagnostics.d("RespiRateCalculator", "AM: " + am + ", BW: " + bw + ", FM: " + fm);
+
+            // Estimate respiratory rate using count-orig method
+            float countOrigRR = countOrigMethod(filteredData, peaks, peakCount);
+
+            // Fuse features to calculate final respiratory rate
+            respiratoryRate = fuseFeatures(am, bw, fm, countOrigRR);
+            Diagnostics.record("respiratory_rate.brpm", respiratoryRate);
+
+        } catch (Exception e) {
+            Diagnostics.count("respiratory_rate.errors", 1);
+            Diagnostics.e("RespiRateCalculator", "Error calculating respiratory rate", e);
+            respiratoryRate = 0.0f;
+        }
+    }
+
+    // Method to calculate amplitude modulation from the peaks and troughs
+    private double calculateAmplitudeModulation(double[] data, int[] peaks, int peakCount, int[] troughs, int troughCount) {
+        double amSum = 0.0;
+        int count = Math.min(peakCount, troughCount);
+        for (int i = 0; i < count; i++) {
+            amSum += Math.abs(data[peaks[i]] - data[troughs[i]]);
+        }
+        return count == 0 ? 0 : amSum / count;
+    }
+
+    // Method to calculate baseline wander from the peaks and troughs
+    private double calculateBaselineWander(double[] data, int[] peaks, int peakCount, int[] troughs, int troughCount) {
+        double bwSum = 0.0;
+        int count = Math.min(peakCount, troughCount);
+        for (int i = 0; i < count; i++) {
+            bwSum += (data[peaks[i]] + data[troughs[i]]) / 2.0;
+        }
+        return count == 0 ? 0 : bwSum / count;
+    }
+
+    // Method to calculate frequency modulation (standard deviation of peak intervals) from the peaks
+    private double calculateFrequencyModulation(int[] peaks, int peakCount) {
+        if (peakCount < 2) return 0;
+        int intervals = peakCount - 1;
+        // The intervals telescope, so their mean is the overall span divided by their number
+        double meanInterval = (double) (peaks[peakCount - 1] - peaks[0]) / intervals;
+        double variance = 0.0;
+        for (int i = 1; i < peakCount; i++) {
+            double deviation = peaks[i] - peaks[i - 1] - meanInterval;
+            variance += deviation * deviation;
+        }
+        variance /= intervals;
+        return Math.sqrt(variance);
+    }
+
+    // Count-orig method for respiratory rate estimation
+    private float countOrigMethod(double[] data, int[] peaks, int peakCount) {
+        if (peakCount == 0) {
+            return 0.0f;
+        }
+        // Define threshold as 0.2 times the 75th percentile of peak values
+        double threshold = 0.2 * percentile(peaks, peakCount);
+        int validBreaths = 0;
+
+        for (int i = 1; i < peakCount; i++) {
+            if (data[peaks[i]] > threshold && data[peaks[i - 1]] > threshold) {
+                validBreaths++;
+            }
+        }
+
+        double durationInMinutes = (double) BUFFER_SIZE / SAMPLING_RATE / 60.0;
+        return (float) (validBreaths / durationInMinutes);
+    }
+
+    // Helper method to calculate the 75th percentile of the raw signal at the peaks
+    private double percentile(int[] peaks, int peakCount) {
+        for (int i = 0; i < peakCount; i++) {
+            percentileScratch[i] = bvpDataBuffer[peaks[i]];
+        }
+        return SampleStatistics.percentile(percentileScratch, peakCount, 75.0);
+    }
+
+    /**
+     * Fuses multiple features to calculate the final respiratory rate.
+     *
+     * @param am    amplitude modulation
+     * @param bw    baseline wander
+     * @param fm    frequency modulation
+     * @param countOrigRR respiratory rate from count-orig method
+     * @return the fused respiratory rate
+     */
+    private float fuseFeatures(double am, double bw, double fm, float countOrigRR) {
+        // Example weights for each feature
+        double weightAM = 0.5;
+        double weightBW = 0.2;
+        double weightFM = 0.2;
+        double weightCountOrig = 0.1;
+
+        // Weighted fusion
+        return (float) ((weightAM * am) + (weightBW * bw) + (weightFM * fm) + (weightCountOrig * countOrigRR));
+    }
+
+    // Method to check if the respiratory rate is ready
+    public boolean isReady() {
+        return ready;
+    }
+
+    // Signal quality of the window behind the current respiratory rate, between 0 and 1
+    public float getQuality() {
+        return quality;
+    }
+
+    // Method to get the respiratory rate
+    public float getRespiratoryRate() {
+        ready = false;
+        return respiratoryRate;
+    }
+}
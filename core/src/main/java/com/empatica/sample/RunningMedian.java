@@ -0,0 +1,171 @@
+package com.empatica.sample;
+
+/**
+ * Median of the last {@code windowSize} values, updated in O(log n) per value.
+ *
+ * The window is split between a max-heap holding the lower half and a min-heap holding the
+ * upper half, so the median is always at the top of one or both heaps. Both heaps store slots
+ * of a ring of values and every slot remembers where it sits in its heap, so the value leaving
+ * the window is removed directly instead of being searched for. All arrays are allocated in the
+ * constructor. Not thread-safe.
+ */
+public class RunningMedian {
+
+    private final double[] values;
+    // Heap position of each slot; lower heap positions are stored as -(position + 1)
+    private final int[] heapPosition;
+    private final Heap lower;
+    private final Heap upper;
+    private int next = 0; // Slot the next value is written to
+    private int size = 0;
+
+    public RunningMedian(int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Window size must be positive: " + windowSize);
+        }
+        values = new double[windowSize];
+        heapPosition = new int[windowSize];
+        lower = new Heap(windowSize, true);
+        upper = new Heap(windowSize, false);
+    }
+
+    // Adds a value, dropping the oldest one once the window is full
+    public void add(double value) {
+        int slot = next;
+        if (size == values.length) {
+            remove(slot);
+            rebalance();
+        } else {
+            size++;
+        }
+        values[slot] = value;
+        if (lower.size == 0 || value <= values[lower.top()]) {
+            lower.push(slot);
+        } else {
+            upper.push(slot);
+        }
+        rebalance();
+        next = next + 1 == values.length ? 0 : next + 1;
+    }
+
+    private void remove(int slot) {
+        int position = heapPosition[slot];
+        if (position < 0) {
+            lower.removeAt(-position - 1);
+        } else {
+            upper.removeAt(position);
+        }
+    }
+
+    // Keeps the lower heap equal in size to the upper one or one larger
+    private void rebalance() {
+        if (lower.size > upper.size + 1) {
+            upper.push(lower.removeAt(0));
+        } else if (upper.size > lower.size) {
+            lower.push(upper.removeAt(0));
+        }
+    }
+
+    // Median of the values in the window, averaging the two middle ones for an even count; 0.0 if empty
+    public double getMedian() {
+        if (size == 0) return 0.0;
+        if (lower.size > upper.size) {
+            return values[lower.top()];
+        }
+        return (values[lower.top()] + values[upper.top()]) / 2.0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == values.length;
+    }
+
+    public void clear() {
+        lower.size = 0;
+        upper.size = 0;
+        next = 0;
+        size = 0;
+    }
+
+    // Binary heap of slots ordered by their values, largest first for the lower half
+    private class Heap {
+        final int[] slots;
+        final boolean max;
+        int size = 0;
+
+        Heap(int capacity, boolean max) {
+            slots = new int[capacity];
+            this.max = max;
+        }
+
+        int top() {
+            return slots[0];
+        }
+
+        void push(int slot) {
+            place(slot, size);
+            size++;
+            siftUp(size - 1);
+        }
+
+        // Removes and returns the slot at the given heap position
+        int removeAt(int position) {
+            int slot = slots[position];
+            size--;
+            if (position < size) {
+                place(slots[size], position);
+                if (!siftUp(position)) {
+                    siftDown(position);
+                }
+            }
+            return slot;
+        }
+
+        // True if the first slot belongs above the second
+        boolean above(int a, int b) {
+            return max ? values[a] > values[b] : values[a] < values[b];
+        }
+
+        boolean siftUp(int position) {
+            int start = position;
+            int slot = slots[position];
+            while (position > 0) {
+                int parent = (position - 1) >>> 1;
+                if (!above(slot, slots[parent])) {
+                    break;
+                }
+                place(slots[parent], position);
+                position = parent;
+            }
+            place(slot, position);
+            return position != start;
+        }
+
+        void siftDown(int position) {
+            int slot = slots[position];
+            while (true) {
+                int child = 2 * position + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && above(slots[child + 1], slots[child])) {
+                    child++;
+                }
+                if (!above(slots[child], slot)) {
+                    break;
+                }
+                place(slots[child], position);
+                position = child;
+            }
+            place(slot, position);
+        }
+
+        void place(int slot, int position) {
+            slots[position] = slot;
+            heapPosition[slot] = max ? -(position + 1) : position;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.empatica.sample;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer/single-consumer queue of timestamped samples.
+ *
+ * Values, timestamps and arrival times live in primitive arrays sized once at construction, so
+ * neither side allocates. The arrival time, a {@link System#nanoTime()} reading taken by the
+ * producer, lets the consumer measure how long each sample waited in the queue. Exactly one
+ * thread may call {@link #offer(float, double, long)} (the Empatica callback
+ * thread) and exactly one thread may call {@link #drain(SampleHandler, int)} (the processing
+ * worker). When the queue is full, new samples are dropped and counted instead of blocking the
+ * producer.
+ */
+public class SampleQueue {
+
+    public interface SampleHandler {
+        void onSample(float value, double timestamp, long arrivalNanos);
+    }
+
+    private final float[] values;
+    private final double[] timestamps;
+    private final long[] arrivalNanos;
+    private final int mask;
+
+    // Next slot to read; written by the consumer only
+    private final AtomicLong head = new AtomicLong();
+    // Next slot to write; written by the producer only
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped;
+    private final AtomicLong maxDepth = new AtomicLong();
+    // Producer-local copy of head, refreshed only when the queue looks full
+    private long cachedHead = 0;
+
+    public SampleQueue(int capacity) {
+        this(capacity, new AtomicLong());
+    }
+
+    // Counts drops in the given counter, for example one registered in PerformanceMetrics
+    public SampleQueue(int capacity, AtomicLong dropped) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        values = new float[capacity];
+        timestamps = new double[capacity];
+        arrivalNanos = new long[capacity];
+        mask = capacity - 1;
+        this.dropped = dropped;
+    }
+
+    // Producer side: returns false and counts a drop when the consumer has fallen behind
+    public boolean offer(float value, double timestamp, long arrival) {
+        long t = tail.get();
+        if (t - cachedHead >= values.length) {
+            cachedHead = head.get();
+            if (t - cachedHead >= values.length) {
+                dropped.lazySet(dropped.get() + 1);
+                return false;
+            }
+        }
+        int index = (int) (t & mask);
+        values[index] = value;
+        timestamps[index] = timestamp;
+        arrivalNanos[index] = arrival;
+        // Volatile write so a consumer going to sleep cannot miss this sample
+        tail.set(t + 1);
+
+        long depth = t + 1 - head.get();
+        if (depth > maxDepth.get()) {
+            maxDepth.lazySet(depth);
+        }
+        return true;
+    }
+
+    // Consumer side: hands up to limit queued samples to the handler, oldest first
+    public int drain(SampleHandler handler, int limit) {
+        long h = head.get();
+        int count = (int) Math.min(tail.get() - h, limit);
+        for (int i = 0; i < count; i++) {
+            int index = (int) ((h + i) & mask);
+            handler.onSample(values[index], timestamps[index], arrivalNanos[index]);
+        }
+        if (count > 0) {
+            head.lazySet(h + count);
+        }
+        return count;
+    }
+
+    // Number of samples waiting for the consumer
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return values.length;
+    }
+
+    // Samples rejected because the queue was full
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    // Highest depth seen by the producer, an upper bound on how far the consumer fell behind
+    public long getMaxDepth() {
+        return maxDepth.get();
+    }
+
+    // Samples accepted so far
+    public long getOfferedCount() {
+        return tail.get();
+    }
+}
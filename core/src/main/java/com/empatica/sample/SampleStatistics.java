@@ -0,0 +1,89 @@
+package com.empatica.sample;
+
+/**
+ * Order statistics over the first {@code size} values of a primitive scratch array.
+ *
+ * Values are found by quickselect in expected O(n) instead of sorting the whole array, and
+ * nothing is allocated. The methods reorder the values they are given, so pass a scratch copy
+ * when the original order still matters.
+ */
+public final class SampleStatistics {
+
+    private SampleStatistics() {
+    }
+
+    /**
+     * Moves the k-th smallest of the first size values (k = 0 being the smallest) to data[k],
+     * with smaller or equal values before it and greater or equal values after it.
+     *
+     * @return the k-th smallest value
+     */
+    public static double select(double[] data, int size, int k) {
+        if (k < 0 || k >= size || size > data.length) {
+            throw new IndexOutOfBoundsException("Rank " + k + ", size " + size);
+        }
+        int left = 0;
+        int right = size - 1;
+        while (right > left) {
+            // Median of three keeps sorted and reversed input linear
+            int middle = (left + right) >>> 1;
+            if (data[middle] < data[left]) swap(data, middle, left);
+            if (data[right] < data[left]) swap(data, right, left);
+            if (data[right] < data[middle]) swap(data, right, middle);
+            double pivot = data[middle];
+
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (data[i] < pivot) i++;
+                while (data[j] > pivot) j--;
+                if (i <= j) {
+                    swap(data, i, j);
+                    i++;
+                    j--;
+                }
+            }
+            // [left, j] <= pivot, [i, right] >= pivot and anything between equals the pivot
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                break;
+            }
+        }
+        return data[k];
+    }
+
+    // Median of the first size values, averaging the two middle ones for an even size; 0.0 if empty
+    public static double median(double[] data, int size) {
+        if (size == 0) return 0.0;
+        int upper = size / 2;
+        double upperValue = select(data, size, upper);
+        if (size % 2 == 1) {
+            return upperValue;
+        }
+        // After selection everything below upper is <= it, so the lower middle is their maximum
+        double lowerValue = data[0];
+        for (int i = 1; i < upper; i++) {
+            lowerValue = Math.max(lowerValue, data[i]);
+        }
+        return (lowerValue + upperValue) / 2.0;
+    }
+
+    /**
+     * Nearest-rank percentile of the first size values: the smallest value with at least
+     * {@code percent} percent of the values at or below it; 0.0 if empty.
+     */
+    public static double percentile(double[] data, int size, double percent) {
+        if (size == 0) return 0.0;
+        int rank = (int) Math.ceil(percent / 100.0 * size) - 1;
+        return select(data, size, Math.max(0, Math.min(rank, size - 1)));
+    }
+
+    private static void swap(double[] data, int a, int b) {
+        double value = data[a];
+        data[a] = data[b];
+        data[b] = value;
+    }
+}
@@ -0,0 +1,103 @@
+package com.empatica.sample;
+
+/**
+ * Cheap per-window signal quality index (SQI) of the BVP, between 0 (unusable) and 1 (clean).
+ *
+ * The score is the product of four factors, each 1 when its feature looks like a clean pulse
+ * wave and falling linearly to 0 as it approaches a value typical of motion or poor contact:
+ * the kurtosis and skewness of the band-passed window (artifacts are spiky and lopsided), the
+ * share of the raw variance left in the pulse band (a perfusion proxy, as the E4 BVP carries no
+ * DC level) and the motion level of the {@link AccelerometerPipeline}. While the device reports
+ * that it is not on the wrist the score is 0. Motion and wrist status are set from the device
+ * callback thread and read by the processing worker, which computes the window features in one
+ * pass over data the pipeline has already copied.
+ */
+public class SignalQualityIndex {
+
+    // Windows scoring below this are skipped by the estimators
+    public static final double MIN_QUALITY = 0.5;
+
+    // Kurtosis (not excess) of a clean pulse wave is around 2 to 3
+    private static final double GOOD_KURTOSIS = 4.0;
+    private static final double BAD_KURTOSIS = 8.0;
+    private static final double GOOD_SKEWNESS = 1.0;
+    private static final double BAD_SKEWNESS = 2.0;
+    // Fraction of the raw variance that passes the pulse band-pass
+    private static final double GOOD_BAND_RATIO = 0.5;
+    private static final double BAD_BAND_RATIO = 0.1;
+    // Smoothed dynamic acceleration, in g
+    private static final double GOOD_MOTION = 0.05;
+    private static final double BAD_MOTION = 0.3;
+
+    private volatile boolean onWrist = true;
+    private volatile double motion = 0.0;
+
+    // Called from the device callback thread with the accelerometer pipeline's motion level in g
+    public void setMotion(double motion) {
+        this.motion = motion;
+    }
+
+    // Called from the device callback thread when the on-wrist status changes
+    public void setOnWrist(boolean onWrist) {
+        this.onWrist = onWrist;
+    }
+
+    public boolean isOnWrist() {
+        return onWrist;
+    }
+
+    // Recent motion level in g
+    public double getMotion() {
+        return motion;
+    }
+
+    // Scores the first length samples of a window; called on the processing worker
+    public double assess(double[] raw, double[] filtered, int length) {
+        if (!onWrist || length < 2) {
+            return 0.0;
+        }
+        double filteredMean = 0.0;
+        double rawMean = 0.0;
+        for (int i = 0; i < length; i++) {
+            filteredMean += filtered[i];
+            rawMean += raw[i];
+        }
+        filteredMean /= length;
+        rawMean /= length;
+
+        double m2 = 0.0;
+        double m3 = 0.0;
+        double m4 = 0.0;
+        double rawVariance = 0.0;
+        for (int i = 0; i < length; i++) {
+            double d = filtered[i] - filteredMean;
+            double d2 = d * d;
+            m2 += d2;
+            m3 += d2 * d;
+            m4 += d2 * d2;
+            double r = raw[i] - rawMean;
+            rawVariance += r * r;
+        }
+        if (m2 == 0.0 || rawVariance == 0.0) {
+            // A flat signal carries no pulse
+            return 0.0;
+        }
+        m2 /= length;
+        m3 /= length;
+        m4 /= length;
+        rawVariance /= length;
+        double skewness = m3 / (m2 * Math.sqrt(m2));
+        double kurtosis = m4 / (m2 * m2);
+
+        return ramp(kurtosis, GOOD_KURTOSIS, BAD_KURTOSIS)
+                * ramp(Math.abs(skewness), GOOD_SKEWNESS, BAD_SKEWNESS)
+                * ramp(m2 / rawVariance, GOOD_BAND_RATIO, BAD_BAND_RATIO)
+                * ramp(motion, GOOD_MOTION, BAD_MOTION);
+    }
+
+    // 1 at or beyond good, 0 at or beyond bad, linear in between; works in either direction
+    private static double ramp(double value, double good, double bad) {
+        double score = (value - bad) / (good - bad);
+        return Math.max(0.0, Math.min(1.0, score));
+    }
+}
@@ -0,0 +1,100 @@
+package com.empatica.sample;
+
+/**
+ * Fixed-capacity ring buffer of primitive samples used as the BVP window by the calculators.
+ *
+ * The backing {@code double[]} is allocated once in the constructor, so adding a sample never
+ * allocates. Readers copy the most recent samples, oldest first, into scratch arrays obtained
+ * from {@link #newWindow(int)} once at construction time. The benchmark module's
+ * {@code IngestAllocationCheck} measures that the per-sample path allocates nothing.
+ */
+public class SignalRingBuffer {
+
+    private final double[] samples;
+    private int head = 0; // Index the next sample is written to
+    private int size = 0;
+    private long totalSamples = 0;
+
+    public SignalRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        samples = new double[capacity];
+    }
+
+    // Appends a sample, overwriting the oldest one once the buffer is full
+    public void add(double sample) {
+        samples[head] = sample;
+        if (++head == samples.length) {
+            head = 0;
+        }
+        if (size < samples.length) {
+            size++;
+        }
+        totalSamples++;
+    }
+
+    // Returns the sample at the given position, 0 being the oldest retained sample
+    public double get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of range, size " + size);
+        }
+        int position = head - size + index;
+        if (position < 0) {
+            position += samples.length;
+        }
+        return samples[position];
+    }
+
+    // Returns the most recently added sample
+    public double latest() {
+        return get(size - 1);
+    }
+
+    /**
+     * Copies the {@code count} most recent samples into {@code destination}, oldest first.
+     *
+     * @return the number of samples copied, which is smaller than {@code count} while the
+     * buffer has not yet received that many samples
+     */
+    public int copyLatest(double[] destination, int count) {
+        int n = Math.min(Math.min(count, size), destination.length);
+        int start = head - n;
+        if (start < 0) {
+            start += samples.length;
+        }
+        int firstPart = Math.min(n, samples.length - start);
+        System.arraycopy(samples, start, destination, 0, firstPart);
+        if (firstPart < n) {
+            System.arraycopy(samples, 0, destination, firstPart, n - firstPart);
+        }
+        return n;
+    }
+
+    // Allocates a scratch window for readers of this buffer; call once, outside the sample path
+    public double[] newWindow(int length) {
+        return new double[length];
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return samples.length;
+    }
+
+    public boolean isFull() {
+        return size == samples.length;
+    }
+
+    // Total number of samples ever added, including overwritten ones
+    public long getTotalSamples() {
+        return totalSamples;
+    }
+}
@@ -0,0 +1,148 @@
+package com.empatica.sample;
+
+/**
+ * Physiology and signal conditions of one {@link DeviceSimulator}. Setters return the profile so
+ * variations can be written inline; the defaults describe a seated adult with a clean signal.
+ */
+public class SimulatedDeviceProfile {
+
+    private double heartRate = 70.0;
+    private double heartRateVariability = 0.04;
+    private double respiratoryRate = 15.0;
+    private double bvpNoise = 0.02;
+    private double motionArtifactsPerMinute = 0.0;
+    private double motionArtifactSeconds = 4.0;
+    private double dropoutsPerMinute = 0.0;
+    private double dropoutSeconds = 2.0;
+    private double scrsPerMinute = 2.0;
+    private double conductance = 2.0;
+    private double temperature = 33.0;
+    private double batteryLevel = 1.0;
+    private double batteryDrainPerHour = 0.03;
+    private long seed = 1L;
+
+    // Mean heart rate in beats per minute
+    public SimulatedDeviceProfile setHeartRate(double heartRate) {
+        this.heartRate = heartRate;
+        return this;
+    }
+
+    // Standard deviation of the inter-beat interval, as a fraction of its mean
+    public SimulatedDeviceProfile setHeartRateVariability(double heartRateVariability) {
+        this.heartRateVariability = heartRateVariability;
+        return this;
+    }
+
+    // Breaths per minute; breathing modulates the BVP amplitude, baseline and beat intervals
+    public SimulatedDeviceProfile setRespiratoryRate(double respiratoryRate) {
+        this.respiratoryRate = respiratoryRate;
+        return this;
+    }
+
+    // Standard deviation of the BVP sensor noise, as a fraction of the pulse amplitude
+    public SimulatedDeviceProfile setBvpNoise(double bvpNoise) {
+        this.bvpNoise = bvpNoise;
+        return this;
+    }
+
+    // Episodes of arm movement, which shake the accelerometer and corrupt the BVP
+    public SimulatedDeviceProfile setMotionArtifacts(double perMinute, double seconds) {
+        this.motionArtifactsPerMinute = perMinute;
+        this.motionArtifactSeconds = seconds;
+        return this;
+    }
+
+    // Losses of the Bluetooth link, during which no channel delivers samples
+    public SimulatedDeviceProfile setDropouts(double perMinute, double seconds) {
+        this.dropoutsPerMinute = perMinute;
+        this.dropoutSeconds = seconds;
+        return this;
+    }
+
+    // Mean rate of skin conductance responses
+    public SimulatedDeviceProfile setScrsPerMinute(double scrsPerMinute) {
+        this.scrsPerMinute = scrsPerMinute;
+        return this;
+    }
+
+    // Tonic skin conductance in microsiemens
+    public SimulatedDeviceProfile setConductance(double conductance) {
+        this.conductance = conductance;
+        return this;
+    }
+
+    // Mean skin temperature in degrees Celsius
+    public SimulatedDeviceProfile setTemperature(double temperature) {
+        this.temperature = temperature;
+        return this;
+    }
+
+    // Battery level at the start, between 0 and 1, and how much of it an hour of streaming uses
+    public SimulatedDeviceProfile setBattery(double level, double drainPerHour) {
+        this.batteryLevel = level;
+        this.batteryDrainPerHour = drainPerHour;
+        return this;
+    }
+
+    // Seed of the random noise, beat intervals and events; equal seeds give equal streams
+    public SimulatedDeviceProfile setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public double getHeartRate() {
+        return heartRate;
+    }
+
+    public double getHeartRateVariability() {
+        return heartRateVariability;
+    }
+
+    public double getRespiratoryRate() {
+        return respiratoryRate;
+    }
+
+    public double getBvpNoise() {
+        return bvpNoise;
+    }
+
+    public double getMotionArtifactsPerMinute() {
+        return motionArtifactsPerMinute;
+    }
+
+    public double getMotionArtifactSeconds() {
+        return motionArtifactSeconds;
+    }
+
+    public double getDropoutsPerMinute() {
+        return dropoutsPerMinute;
+    }
+
+    public double getDropoutSeconds() {
+        return dropoutSeconds;
+    }
+
+    public double getScrsPerMinute() {
+        return scrsPerMinute;
+    }
+
+    public double getConductance() {
+        return conductance;
+    }
+
+    public double getTemperature() {
+        return temperature;
+    }
+
+    public double getBatteryLevel() {
+        return batteryLevel;
+    }
+
+    public double getBatteryDrainPerHour() {
+        return batteryDrainPerHour;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+}
@@ -0,0 +1,133 @@
+package com.empatica.sample;
+
+/**
+ * Sliding DFT over the last {@code length} samples, maintained only for the bins of one band.
+ *
+ * Each new sample updates every bin with the recurrence
+ * {@code X_k(n) = exp(j 2 pi k / N) (X_k(n-1) + x(n) - x(n-N))}, so the cost per sample is
+ * O(bins) instead of O(N log N) per window. The bins are recomputed from the sample history now
+ * and then to discard accumulated rounding error. {@link #dominantFrequency(double)} applies a
+ * Hann window in the frequency domain and interpolates the strongest bin, so a fresh estimate is
+ * available after every sample without touching the history. Not thread-safe.
+ */
+public class SlidingDftBank {
+
+    // Samples between two exact recomputations of the bins, about 17 minutes at 64 Hz
+    private static final int RESYNC_INTERVAL = 1 << 16;
+
+    private final int length;
+    private final int firstBin;
+    private final int binCount;
+    private final double[] history;
+    private final double[] real;
+    private final double[] imag;
+    private final double[] twiddleCos;
+    private final double[] twiddleSin;
+    private final double[] magnitude;
+    private int position = 0;
+    private int filled = 0;
+    private int samplesSinceResync = 0;
+
+    /**
+     * Bank covering [minHz, maxHz] plus the neighbouring bins needed for windowing and interpolation.
+     */
+    public static SlidingDftBank forBand(int length, double samplingRate, double minHz, double maxHz) {
+        double binHz = samplingRate / length;
+        int first = (int) Math.ceil(minHz / binHz);
+        int last = (int) Math.floor(maxHz / binHz);
+        if (first < 2 || last + 2 > length / 2 || first > last) {
+            throw new IllegalArgumentException("Band " + minHz + "-" + maxHz + " Hz does not fit " + length + " samples");
+        }
+        return new SlidingDftBank(length, first, last);
+    }
+
+    // Tracks bins firstBin..lastBin of an N = length DFT; two bins either side are kept as well
+    public SlidingDftBank(int length, int firstBin, int lastBin) {
+        this.length = length;
+        this.firstBin = firstBin - 2;
+        this.binCount = lastBin - firstBin + 5;
+        this.history = new double[length];
+        this.real = new double[binCount];
+        this.imag = new double[binCount];
+        this.twiddleCos = new double[binCount];
+        this.twiddleSin = new double[binCount];
+        this.magnitude = new double[binCount];
+        for (int b = 0; b < binCount; b++) {
+            double angle = 2 * Math.PI * (this.firstBin + b) / length;
+            twiddleCos[b] = Math.cos(angle);
+            twiddleSin[b] = Math.sin(angle);
+        }
+    }
+
+    public void add(double sample) {
+        double delta = sample - history[position];
+        history[position] = sample;
+        position = position + 1 == length ? 0 : position + 1;
+        if (filled < length) {
+            filled++;
+        }
+
+        if (++samplesSinceResync >= RESYNC_INTERVAL) {
+            resync();
+            return;
+        }
+        for (int b = 0; b < binCount; b++) {
+            double re = real[b] + delta;
+            double im = imag[b];
+            real[b] = re * twiddleCos[b] - im * twiddleSin[b];
+            imag[b] = re * twiddleSin[b] + im * twiddleCos[b];
+        }
+    }
+
+    // True once the bank has seen a full window of samples
+    public boolean isFull() {
+        return filled == length;
+    }
+
+    /**
+     * Frequency of the strongest Hann-windowed bin of the band, refined by parabolic
+     * interpolation over the log magnitudes of its neighbours.
+     *
+     * @return the frequency in Hz, or 0 if the band holds no energy
+     */
+    public double dominantFrequency(double samplingRate) {
+        // Hann window as a three-tap convolution of neighbouring bins
+        int peak = -1;
+        for (int b = 1; b < binCount - 1; b++) {
+            double re = 0.5 * real[b] - 0.25 * (real[b - 1] + real[b + 1]);
+            double im = 0.5 * imag[b] - 0.25 * (imag[b - 1] + imag[b + 1]);
+            magnitude[b] = Math.sqrt(re * re + im * im);
+            if (b >= 2 && b < binCount - 2 && (peak < 0 || magnitude[b] > magnitude[peak])) {
+                peak = b;
+            }
+        }
+        if (magnitude[peak] <= 0.0) {
+            return 0.0;
+        }
+        double left = Math.log(magnitude[peak - 1] + Double.MIN_NORMAL);
+        double center = Math.log(magnitude[peak]);
+        double right = Math.log(magnitude[peak + 1] + Double.MIN_NORMAL);
+        double denominator = left - 2 * center + right;
+        double offset = denominator < 0.0 ? Math.max(-0.5, Math.min(0.5, 0.5 * (left - right) / denominator)) : 0.0;
+        return (firstBin + peak + offset) * samplingRate / length;
+    }
+
+    // Recomputes every bin directly from the history, oldest sample first
+    private void resync() {
+        samplesSinceResync = 0;
+        for (int b = 0; b < binCount; b++) {
+            double re = 0.0;
+            double im = 0.0;
+            int k = firstBin + b;
+            for (int m = 0; m < length; m++) {
+                double sample = history[(position + m) % length];
+                // Reduce k*m modulo N so the angle stays small and exact
+                double angle = -2 * Math.PI * (int) (((long) k * m) % length) / length;
+                re += sample * Math.cos(angle);
+                im += sample * Math.sin(angle);
+            }
+            real[b] = re;
+            imag[b] = im;
+        }
+    }
+}
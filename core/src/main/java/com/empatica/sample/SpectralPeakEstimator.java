@@ -0,0 +1,120 @@
+package com.empatica.sample;
+
+import org.apache.commons.math3.transform.DftNormalization;
+import org.apache.commons.math3.transform.FastFourierTransformer;
+import org.apache.commons.math3.transform.TransformType;
+
+import java.util.Arrays;
+
+/**
+ * Finds the dominant frequency of a signal within a band from its power spectrum.
+ *
+ * The signal is mean-removed, Hann-windowed and zero-padded to a power of two before an in-place
+ * FFT, and the strongest bin in the band is refined by parabolic interpolation over the log power
+ * of its neighbours. All scratch arrays are allocated once for the largest supported input, so an
+ * estimate costs O(N log N) and allocates nothing. Not thread-safe.
+ */
+public class SpectralPeakEstimator {
+
+    private final int fftSize;
+    private final double[][] spectrum;
+    private final double[] hann;
+    private final double[] power;
+    private int hannLength = -1;
+    private double peakFraction = 0.0;
+
+    /**
+     * @param maxLength     longest signal that will be passed to {@link #estimate}
+     * @param paddingFactor zero-padding beyond the next power of two, to interpolate on a finer grid
+     */
+    public SpectralPeakEstimator(int maxLength, int paddingFactor) {
+        int size = Integer.highestOneBit(Math.max(2, maxLength - 1)) << 1;
+        this.fftSize = size * Integer.highestOneBit(Math.max(1, paddingFactor));
+        this.spectrum = new double[2][fftSize];
+        this.hann = new double[maxLength];
+        this.power = new double[fftSize / 2 + 1];
+    }
+
+    /**
+     * @return the dominant frequency in [minHz, maxHz], in Hz, or 0 if the band holds no power
+     */
+    public double estimate(double[] signal, int length, double samplingRate, double minHz, double maxHz) {
+        if (length > hann.length) {
+            throw new IllegalArgumentException("Signal of " + length + " samples exceeds " + hann.length);
+        }
+        prepareWindow(length);
+
+        double mean = 0.0;
+        for (int i = 0; i < length; i++) {
+            mean += signal[i];
+        }
+        mean /= length;
+
+        double[] re = spectrum[0];
+        double[] im = spectrum[1];
+        for (int i = 0; i < length; i++) {
+            re[i] = (signal[i] - mean) * hann[i];
+        }
+        Arrays.fill(re, length, fftSize, 0.0);
+        Arrays.fill(im, 0.0);
+        FastFourierTransformer.transformInPlace(spectrum, DftNormalization.STANDARD, TransformType.FORWARD);
+
+        double binHz = samplingRate / fftSize;
+        int first = Math.max(1, (int) Math.ceil(minHz / binHz));
+        int last = Math.min(fftSize / 2 - 1, (int) Math.floor(maxHz / binHz));
+        if (first > last) {
+            throw new IllegalArgumentException("Band " + minHz + "-" + maxHz + " Hz is narrower than one bin");
+        }
+
+        int peak = -1;
+        double bandPower = 0.0;
+        for (int k = first - 1; k <= last + 1; k++) {
+            power[k] = re[k] * re[k] + im[k] * im[k];
+            if (k >= first && k <= last) {
+                bandPower += power[k];
+                if (peak < 0 || power[k] > power[peak]) {
+                    peak = k;
+                }
+            }
+        }
+        if (bandPower <= 0.0) {
+            peakFraction = 0.0;
+            return 0.0;
+        }
+        peakFraction = power[peak] / bandPower;
+        return (peak + interpolate(peak)) * binHz;
+    }
+
+    // Share of the band's power in its strongest bin, a rough confidence for the last estimate
+    public double getPeakFraction() {
+        return peakFraction;
+    }
+
+    public int getFftSize() {
+        return fftSize;
+    }
+
+    // Offset of the true peak from bin k, in bins, from a parabola through the log power
+    private double interpolate(int k) {
+        double left = Math.log(power[k - 1] + Double.MIN_NORMAL);
+        double center = Math.log(power[k] + Double.MIN_NORMAL);
+        double right = Math.log(power[k + 1] + Double.MIN_NORMAL);
+        double denominator = left - 2 * center + right;
+        if (denominator >= 0.0) {
+            // Not a local maximum, e.g. a rising band edge
+            return 0.0;
+        }
+        double offset = 0.5 * (left - right) / denominator;
+        return Math.max(-0.5, Math.min(0.5, offset));
+    }
+
+    private void prepareWindow(int length) {
+        if (length == hannLength) {
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            hann[i] = 0.5 - 0.5 * Math.cos(2 * Math.PI * i / (length - 1));
+        }
+        hannLength = length;
+    }
+}
@@ -0,0 +1,136 @@
+package com.empatica.sample;
+
+/**
+ * Detects peaks and troughs of a band-passed signal one sample at a time, in O(1) per sample.
+ *
+ * A local maximum becomes a peak candidate when its prominence, the rise from the lowest sample
+ * since the previous peak, reaches a fraction of an envelope of recent prominences. The envelope
+ * follows accepted peaks and relaxes between them, so the threshold tracks changes in pulse
+ * amplitude in both directions. A dicrotic wave rises only from the notch and stays below the
+ * threshold however late it follows the beat. A candidate is only confirmed once the refractory
+ * interval after it has passed without a higher one, so noise spikes next to a beat are not
+ * reported as a second beat. Troughs are detected the same way on the inverted signal.
+ * Confirmed events are appended to {@link PeakEventRing}s, shared by every consumer.
+ */
+public class StreamingPeakDetector {
+
+    // Weight of each new peak in the envelope
+    private static final double ENVELOPE_GAIN = 0.125;
+
+    private final Side peaks;
+    private final Side troughs;
+    private final int refractorySamples;
+    private final double thresholdFraction;
+    private final double envelopeDecay;
+    private long sampleIndex;
+    private double previous;
+    private double beforePrevious;
+    private int seen = 0;
+
+    /**
+     * @param refractorySeconds minimum spacing between two events of the same kind
+     * @param thresholdFraction prominence a candidate needs, as a fraction of the envelope
+     * @param ringCapacity      events of each kind retained for consumers
+     * @param firstSampleIndex  stream index of the first sample passed to {@link #add(double)}
+     */
+    public StreamingPeakDetector(double samplingRate, double refractorySeconds, double thresholdFraction,
+                                 int ringCapacity, long firstSampleIndex) {
+        this.refractorySamples = (int) Math.round(refractorySeconds * samplingRate);
+        this.thresholdFraction = thresholdFraction;
+        // Envelope relaxing over about 4 s
+        this.envelopeDecay = 1.0 / (4.0 * samplingRate);
+        this.peaks = new Side(ringCapacity, 1.0);
+        this.troughs = new Side(ringCapacity, -1.0);
+        this.sampleIndex = firstSampleIndex;
+    }
+
+    public void add(double sample) {
+        if (seen >= 2) {
+            // The previous sample is an extremum if it is strictly above or below both neighbours
+            long candidateIndex = sampleIndex - 1;
+            if (previous > beforePrevious && previous > sample) {
+                peaks.offer(candidateIndex, previous);
+            } else if (previous < beforePrevious && previous < sample) {
+                troughs.offer(candidateIndex, -previous);
+            }
+        } else {
+            seen++;
+        }
+        peaks.track(sample);
+        troughs.track(-sample);
+        peaks.advance(sampleIndex);
+        troughs.advance(sampleIndex);
+        beforePrevious = previous;
+        previous = sample;
+        sampleIndex++;
+    }
+
+    public PeakEventRing getPeaks() {
+        return peaks.ring;
+    }
+
+    public PeakEventRing getTroughs() {
+        return troughs.ring;
+    }
+
+    // Index the next sample passed to add() will get
+    public long getSampleIndex() {
+        return sampleIndex;
+    }
+
+    // One polarity, working on values oriented so that events are maxima (troughs are negated)
+    private class Side {
+        final PeakEventRing ring;
+        final double sign;
+        double envelope = 0.0;
+        boolean hasCandidate = false;
+        long candidateIndex;
+        double candidateHeight;
+        double candidateValue;
+        long lastEventIndex = Long.MIN_VALUE / 2;
+        // Lowest value since the last confirmed event, and since the pending candidate
+        double floor = Double.POSITIVE_INFINITY;
+        double floorAfterCandidate = Double.POSITIVE_INFINITY;
+
+        Side(int capacity, double sign) {
+            ring = new PeakEventRing(capacity);
+            this.sign = sign;
+        }
+
+        void track(double value) {
+            floor = Math.min(floor, value);
+            floorAfterCandidate = Math.min(floorAfterCandidate, value);
+        }
+
+        void offer(long index, double value) {
+            double height = value - floor;
+            if (height <= 0.0 || height < thresholdFraction * envelope) {
+                return;
+            }
+            if (index - lastEventIndex < refractorySamples) {
+                return;
+            }
+            if (!hasCandidate || height > candidateHeight) {
+                // Within the refractory interval of a candidate only the highest one survives
+                hasCandidate = true;
+                candidateIndex = index;
+                candidateHeight = height;
+                candidateValue = sign * value;
+                floorAfterCandidate = value;
+            }
+        }
+
+        // Confirms a candidate once its refractory interval is over
+        void advance(long index) {
+            if (hasCandidate && index - candidateIndex >= refractorySamples) {
+                ring.add(candidateIndex, candidateValue);
+                lastEventIndex = candidateIndex;
+                envelope += ENVELOPE_GAIN * (candidateHeight - envelope);
+                hasCandidate = false;
+                // The next event's prominence is measured from after this one
+                floor = floorAfterCandidate;
+            }
+            envelope -= envelopeDecay * envelope;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.empatica.sample;
+
+/**
+ * Streaming skin temperature analysis on the 4 Hz temperature channel of the E4.
+ *
+ * Each sample is checked against the plausible range of skin temperature and against the
+ * {@link RunningMedian} of the last 5 s; spikes and dropouts are rejected before they reach the
+ * EWMA that smooths the accepted samples. A two-sided Page-Hinkley test on the smoothed signal
+ * detects sustained shifts of its level, for example when the wristband is taken off or the
+ * wearer goes outside, and restarts from the new level after each detection. The smoothed
+ * signal is summarised at a fixed interval. Memory is constant however long the session runs.
+ * Not thread-safe.
+ */
+public class TemperatureEngine {
+
+    // Empatica E4 skin temperature sampling rate
+    public static final double SAMPLING_RATE = 4.0;
+
+    // Plausible skin temperature, in degrees Celsius
+    private static final double MIN_TEMPERATURE = 15.0;
+    private static final double MAX_TEMPERATURE = 45.0;
+    // Window of the median a sample is compared to, and the largest deviation accepted
+    private static final double OUTLIER_WINDOW = 5.0;
+    private static final double MAX_DEVIATION = 0.5;
+    // Samples the median needs before it is used as a reference
+    private static final int MIN_REFERENCE = 3;
+    // Time constant of the smoothing, in seconds
+    private static final double SMOOTHING_TIME_CONSTANT = 10.0;
+    // Page-Hinkley tolerance per sample and detection threshold, in degrees and degree-samples
+    private static final double CHANGE_TOLERANCE = 0.1;
+    private static final double CHANGE_THRESHOLD = 40.0;
+
+    public interface Listener {
+        // Called when a sustained level shift is detected; delta is the new minus the old level
+        void onChange(double timestamp, double delta);
+
+        // Called at the end of every summary interval with statistics of the smoothed signal
+        void onSummary(double startTimestamp, double mean, double min, double max, int rejected);
+    }
+
+    private final Listener listener;
+    private final int summarySamples;
+    private final double smoothingAlpha = 1.0 / (SMOOTHING_TIME_CONSTANT * SAMPLING_RATE);
+    private final RunningMedian median = new RunningMedian((int) Math.round(OUTLIER_WINDOW * SAMPLING_RATE));
+
+    private boolean initialized = false;
+    private double smoothed;
+    private long rejectedTotal = 0;
+    private long changeCount = 0;
+
+    // Page-Hinkley state since the last detected change
+    private long levelCount = 0;
+    private double levelSum = 0.0;
+    private double upwardSum = 0.0;
+    private double upwardMin = 0.0;
+    private double downwardSum = 0.0;
+    private double downwardMax = 0.0;
+
+    // Statistics of the current summary interval
+    private int intervalSamples = 0;
+    private double intervalStart;
+    private double intervalSum = 0.0;
+    // Samples in intervalSum; none before the first accepted sample
+    private int intervalSummed = 0;
+    private double intervalMin = Double.POSITIVE_INFINITY;
+    private double intervalMax = Double.NEGATIVE_INFINITY;
+    private int intervalRejected = 0;
+
+    public TemperatureEngine(double summarySeconds, Listener listener) {
+        this.summarySamples = (int) Math.round(summarySeconds * SAMPLING_RATE);
+        if (summarySamples <= 0) {
+            throw new IllegalArgumentException("Summary interval too short: " + summarySeconds);
+        }
+        this.listener = listener;
+    }
+
+    // Ingests one skin temperature sample in degrees Celsius
+    public void add(float temperature, double timestamp) {
+        if (intervalSamples == 0) {
+            intervalStart = timestamp;
+        }
+        intervalSamples++;
+
+        if (accept(temperature)) {
+            if (!initialized) {
+                smoothed = temperature;
+                initialized = true;
+            }
+            smoothed += smoothingAlpha * (temperature - smoothed);
+            detectChange(timestamp);
+        } else {
+            rejectedTotal++;
+            intervalRejected++;
+        }
+
+        if (initialized) {
+            intervalSum += smoothed;
+            intervalSummed++;
+            intervalMin = Math.min(intervalMin, smoothed);
+            intervalMax = Math.max(intervalMax, smoothed);
+        }
+        if (intervalSamples == summarySamples) {
+            if (listener != null && intervalMin <= intervalMax) {
+                listener.onSummary(intervalStart, intervalSum / intervalSummed, intervalMin, intervalMax,
+                        intervalRejected);
+            }
+            intervalSamples = 0;
+            intervalSum = 0.0;
+            intervalSummed = 0;
+            intervalMin = Double.POSITIVE_INFINITY;
+            intervalMax = Double.NEGATIVE_INFINITY;
+            intervalRejected = 0;
+        }
+    }
+
+    // Range check, then comparison with the median of the recent plausible samples
+    private boolean accept(float temperature) {
+        if (!(temperature >= MIN_TEMPERATURE && temperature <= MAX_TEMPERATURE)) {
+            return false;
+        }
+        boolean reference = median.size() >= MIN_REFERENCE;
+        double deviation = Math.abs(temperature - median.getMedian());
+        // Every plausible sample enters the median, so a real step is accepted once it persists
+        median.add(temperature);
+        return !reference || deviation <= MAX_DEVIATION;
+    }
+
+    private void detectChange(double timestamp) {
+        levelCount++;
+        levelSum += smoothed;
+        double deviation = smoothed - levelSum / levelCount;
+        upwardSum += deviation - CHANGE_TOLERANCE;
+        upwardMin = Math.min(upwardMin, upwardSum);
+        downwardSum += deviation + CHANGE_TOLERANCE;
+        downwardMax = Math.max(downwardMax, downwardSum);
+
+        if (upwardSum - upwardMin > CHANGE_THRESHOLD || downwardMax - downwardSum > CHANGE_THRESHOLD) {
+            double delta = smoothed - levelSum / levelCount;
+            changeCount++;
+            if (listener != null) {
+                listener.onChange(timestamp, delta);
+            }
+            levelCount = 0;
+            levelSum = 0.0;
+            upwardSum = 0.0;
+            upwardMin = 0.0;
+            downwardSum = 0.0;
+            downwardMax = 0.0;
+        }
+    }
+
+    // Smoothed temperature in degrees Celsius, NaN before the first accepted sample
+    public double getSmoothed() {
+        return initialized ? smoothed : Double.NaN;
+    }
+
+    public long getRejectedCount() {
+        return rejectedTotal;
+    }
+
+    public long getChangeCount() {
+        return changeCount;
+    }
+}